@@ -0,0 +1,119 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import java.util.TreeSet;
+
+/**
+ * Immutable compressed sparse row (CSR) copy of a game graph.
+ * The neighbours of node {@code n} are {@code targets[offsets[n]]} up to
+ * {@code targets[offsets[n + 1] - 1]}, and {@code transports} holds a bitmask of the
+ * {@link ScotlandYard.Transport}s of each of those edges.
+ * The nodes one move with each ticket away from every node are also kept as {@code long[]} bitsets
+ * (bit {@code n % 64} of word {@code n / 64} is node {@code n}), see {@link #reach(int, int)}.
+ */
+public final class CompactGraph {
+
+    // Bitmask with every transport set
+    public static final int ALL_TRANSPORTS = (1 << ScotlandYard.Transport.values().length) - 1;
+
+    private final int size;
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] transports;
+    // [ticket][node], nodes one move with that ticket away; secret goes anywhere, double nowhere
+    private final long[][][] reach;
+
+    private CompactGraph(int size, int[] offsets, int[] targets, byte[] transports) {
+        this.size = size;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.transports = transports;
+        this.reach = new long[ScotlandYard.Ticket.values().length][size][words()];
+        for (ScotlandYard.Ticket ticket : ScotlandYard.Ticket.values()) {
+            int mask = mask(ticket);
+            for (int node = 0; node < size; node++) {
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    if ((transports[edge] & mask) != 0) reach[ticket.ordinal()][node][targets[edge] >>> 6] |= 1L << targets[edge];
+                }
+            }
+        }
+    }
+
+    public static CompactGraph of(ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph) {
+        int size = graph.nodes().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[graph.edges().size() * 2];
+        byte[] transports = new byte[targets.length];
+        // Neighbours are laid out in ascending node order so iteration is deterministic
+        int edge = 0;
+        for (int node = 0; node < size; node++) {
+            offsets[node] = edge;
+            if (!graph.nodes().contains(node)) continue;
+            for (int adj : new TreeSet<>(graph.adjacentNodes(node))) {
+                targets[edge] = adj;
+                transports[edge] = (byte) mask(graph.edgeValueOrDefault(node, adj, ImmutableSet.of()));
+                edge++;
+            }
+        }
+        offsets[size] = edge;
+        return new CompactGraph(size, offsets, targets, transports);
+    }
+
+    // Returns the bitmask of a single transport
+    public static int mask(ScotlandYard.Transport transport) {
+        return 1 << transport.ordinal();
+    }
+
+    // Returns the bitmask of a set of transports
+    public static int mask(Iterable<ScotlandYard.Transport> transports) {
+        int mask = 0;
+        for (ScotlandYard.Transport t : transports) mask |= mask(t);
+        return mask;
+    }
+
+    // Returns the bitmask of the transports a ticket can be used on
+    public static int mask(ScotlandYard.Ticket ticket) {
+        if (ticket == ScotlandYard.Ticket.SECRET) return ALL_TRANSPORTS;
+        int mask = 0;
+        for (ScotlandYard.Transport t : ScotlandYard.Transport.values()) if (t.requiredTicket() == ticket) mask |= mask(t);
+        return mask;
+    }
+
+    // Returns largest node number + 1
+    public int size() {
+        return size;
+    }
+
+    // Returns number of longs in a node bitset
+    public int words() {
+        return (size + 63) / 64;
+    }
+
+    // Returns the bitset of nodes one move with ticket (by ordinal) away from node, must not be modified
+    public long[] reach(int ticket, int node) {
+        return reach[ticket][node];
+    }
+
+    // Returns index of the first edge of node
+    public int edgesStart(int node) {
+        return offsets[node];
+    }
+
+    // Returns index after the last edge of node
+    public int edgesEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    // Returns the node at the far end of an edge
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    // Returns the transport bitmask of an edge
+    public int transports(int edge) {
+        return transports[edge];
+    }
+}
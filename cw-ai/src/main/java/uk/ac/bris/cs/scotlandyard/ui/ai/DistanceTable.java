@@ -0,0 +1,99 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Immutable all-pairs hop distances between the nodes of a game graph.
+ * Distances are stored in a flat {@code byte} matrix indexed by node number, so a lookup is a
+ * single read. The table for the standard graph is memory-mapped from a cache file once per JVM,
+ * see {@link #standard()}.
+ */
+public final class DistanceTable {
+
+    // Stored for node pairs with no path between them
+    public static final int UNREACHABLE = Byte.MAX_VALUE;
+
+    // Directory of the cached distance file, override with -Dscotlandyard.cache=<dir>
+    static final String CACHE_PROPERTY = "scotlandyard.cache";
+    static final String CACHE_FILE = "distances.bin";
+
+    private final int size;
+    private final ByteBuffer cells;
+
+    DistanceTable(int size, ByteBuffer cells) {
+        if (cells.capacity() != size * size) throw new IllegalArgumentException("bad table size");
+        this.size = size;
+        this.cells = cells.asReadOnlyBuffer();
+    }
+
+    // Returns number of hops between two nodes
+    public int distance(int from, int to) {
+        return cells.get(from * size + to);
+    }
+
+    // Returns largest node number + 1
+    public int size() {
+        return size;
+    }
+
+    // Returns a read only view over all cells, row by row
+    ByteBuffer cells() {
+        return cells.duplicate().clear();
+    }
+
+    // Builds the distance table for any graph
+    public static DistanceTable of(ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph) {
+        return of(CompactGraph.of(graph), CompactGraph.ALL_TRANSPORTS);
+    }
+
+    // Builds the distance table using only edges with a transport in transportMask
+    public static DistanceTable of(CompactGraph graph, int transportMask) {
+        byte[] cells = new Distances().allDistances(graph, transportMask);
+        return new DistanceTable(graph.size(), ByteBuffer.wrap(cells));
+    }
+
+    // Maps the table from file, regenerating the file if it is missing or was built for another graph
+    static DistanceTable load(Path file, ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph)
+            throws IOException {
+        Distances distances = new Distances();
+        long checksum = Distances.checksum(graph);
+        DistanceTable table = distances.readFile(file, checksum);
+        if (table != null) return table;
+        table = of(graph);
+        distances.writeFile(file, table, checksum);
+        return table;
+    }
+
+    // Returns the shared table for the standard graph
+    public static DistanceTable standard() {
+        return Standard.TABLE;
+    }
+
+    // Holder class so the standard table is loaded lazily, once, on first use
+    private static final class Standard {
+        private static final DistanceTable TABLE = load();
+
+        private static DistanceTable load() {
+            ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph;
+            try {
+                graph = ScotlandYard.standardGraph();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Path dir = Path.of(System.getProperty(CACHE_PROPERTY,
+                    Path.of(System.getProperty("user.home"), ".scotlandyard").toString()));
+            try {
+                return DistanceTable.load(dir.resolve(CACHE_FILE), graph);
+            } catch (IOException e) {
+                // Cache directory not usable, fall back to an in memory table
+                return of(graph);
+            }
+        }
+    }
+}
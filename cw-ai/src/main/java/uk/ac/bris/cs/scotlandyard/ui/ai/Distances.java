@@ -5,79 +5,117 @@ import com.google.common.graph.ImmutableValueGraph;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
 
 public class Distances {
 
-    void writeFile(List<List<Integer>> distances) {
-        FileOutputStream fos;
-        ObjectOutputStream oos;
-        try {
-            fos = new FileOutputStream("t.tmp");
-            oos = new ObjectOutputStream(fos);
-            oos.writeObject(distances);
-            oos.close();
+    // Binary distance file: magic, version, node count, graph checksum, then one byte per cell
+    static final int MAGIC = 0x53594454;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES;
+
+    void writeFile(Path path, DistanceTable table, long checksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(table.size())
+                .putLong(checksum)
+                .flip();
+        // Write to a temporary file first so readers never see a half written table
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ByteBuffer cells = table.cells();
+            while (header.hasRemaining()) channel.write(header);
+            while (cells.hasRemaining()) channel.write(cells);
         }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
-    List<List<Integer>> readFile() {
-        // Read list of all distances from file t.tmp
-        FileInputStream fis;
-        ObjectInputStream ois;
-        List<List<Integer>> distances;
-        try {
-            fis = new FileInputStream("cw-ai/src/main/java/uk/ac/bris/cs/scotlandyard/ui/ai/t.tmp");
-            ois = new ObjectInputStream(fis);
-            distances = (List<List<Integer>>) ois.readObject();
-            ois.close();
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException(e);
+    DistanceTable readFile(Path path, long checksum) throws IOException {
+        // Returns null if the file is missing, from another version or built for another graph
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+            int size = buffer.getInt();
+            if (buffer.getLong() != checksum) return null;
+            if (buffer.remaining() != size * size) return null;
+            // Cells stay in the mapping, the mapping outlives the channel
+            return new DistanceTable(size, buffer.slice(HEADER_BYTES, size * size));
         }
-        return distances;
     }
 
-    List<List<Integer>> allDistances(ImmutableValueGraph graph){
-        List<List<Integer>> distances = new ArrayList<>();
-        for (Object n : graph.nodes()) {
-            List<Integer> nodeDistances = dijkstras(graph, (Integer) n);
-            distances.add(nodeDistances);
+    static long checksum(ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph) {
+        // CRC of every edge and its transports, in node order so graph iteration order doesn't matter
+        ByteBuffer edges = ByteBuffer.allocate((graph.edges().size() + 1) * Integer.BYTES * 3);
+        edges.putInt(graph.nodes().size()).putInt(0).putInt(0);
+        for (int node : new TreeSet<>(graph.nodes())) {
+            for (int adj : new TreeSet<>(graph.adjacentNodes(node))) {
+                if (adj < node) continue;
+                edges.putInt(node).putInt(adj).putInt(CompactGraph.mask(graph.edgeValueOrDefault(node, adj, ImmutableSet.of())));
+            }
         }
-        return distances;
+        CRC32 crc = new CRC32();
+        crc.update(edges.flip());
+        return crc.getValue();
     }
 
+    // Returns a size x size matrix of hops between every pair of nodes, only travelling along
+    // edges with a transport in transportMask. One breadth first search per source node, run
+    // as fork-join tasks that each fill their own row of the shared matrix.
+    byte[] allDistances(CompactGraph graph, int transportMask) {
+        int size = graph.size();
+        byte[] cells = new byte[size * size];
+        Arrays.fill(cells, (byte) DistanceTable.UNREACHABLE);
+        List<RecursiveAction> tasks = new ArrayList<>(size);
+        for (int source = 0; source < size; source++) {
+            final int from = source;
+            tasks.add(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
 
-    public List<Integer> dijkstras(
-            ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph,
-            Integer source) {
-        // Initialise distances, visited and priority queue
-        List<Integer> distances = new ArrayList<>(Collections.nCopies(graph.nodes().size() + 1, 99999));
-        distances.set(source, 0);
-        Set<Integer> visited = new HashSet<>();
-        IndexMinPQ pq = new IndexMinPQ<Integer>(graph.nodes().size() + 1);
-        pq.insert(source, 0);
-
-        while (!pq.isEmpty()) {
-            // Pull node from top of Priority Queue
-            Integer minValue = (Integer) pq.minKey();
-            int node = pq.delMin();
-            // Visit node
-            visited.add(node);
-            if (distances.get(node) < minValue) continue;
-            // Loop over non visited adjacent nodes
-            for (int adj : graph.adjacentNodes(node)) {
-                if (visited.contains(adj)) continue;
-                // If new distance is shorter update distances and Priority Queue
-                Integer newDist = distances.get(node) + 1;
-                if (newDist < distances.get(adj)) {
-                    distances.set(adj, newDist);
-                    if (!pq.contains(adj)) pq.insert(adj, newDist);
-                    else pq.decreaseKey(adj, newDist);
+                @Override
+                protected void compute() {
+                    bfs(graph, transportMask, from, cells);
                 }
+            });
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return cells;
+    }
+
+    // Breadth first search from source, writing hops into row source of cells
+    static void bfs(CompactGraph graph, int transportMask, int source, byte[] cells) {
+        int size = graph.size();
+        int row = source * size;
+        // Nodes without edges (e.g. 0) only reach themselves
+        cells[row + source] = 0;
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int node = queue[head++];
+            int next = cells[row + node] + 1;
+            if (next >= DistanceTable.UNREACHABLE) continue;
+            for (int edge = graph.edgesStart(node); edge < graph.edgesEnd(node); edge++) {
+                if ((graph.transports(edge) & transportMask) == 0) continue;
+                int adj = graph.target(edge);
+                if (cells[row + adj] != DistanceTable.UNREACHABLE) continue;
+                cells[row + adj] = (byte) next;
+                queue[tail++] = adj;
             }
         }
-        return distances;
     }
 }
@@ -0,0 +1,12 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import javax.annotation.Nullable;
+
+/**
+ * An AI that reports what its last pickMove call did, for harnesses to collect.
+ */
+public interface Instrumented {
+
+    // Stats of the last pickMove call, null before the first
+    @Nullable SearchStats lastSearch();
+}
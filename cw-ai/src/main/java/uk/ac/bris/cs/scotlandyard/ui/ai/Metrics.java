@@ -0,0 +1,130 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * An in-process registry of named histograms, safe to record into from several threads.
+ * Exports one row per histogram, in name order, as CSV or JSON.
+ */
+public final class Metrics {
+
+    private final SortedMap<String, Histogram> histograms = new TreeMap<>();
+
+    public synchronized Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public void record(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    // Records every counter of stats under prefix, e.g. prefix.nodes
+    public void record(String prefix, SearchStats stats) {
+        record(prefix + ".nanos", stats.nanos);
+        record(prefix + ".nodes", stats.nodes);
+        record(prefix + ".nodesPerSecond", stats.nodesPerSecond());
+        record(prefix + ".depth", stats.depth);
+        record(prefix + ".cutoffs", stats.cutoffs);
+        record(prefix + ".tableHits", stats.tableHits);
+    }
+
+    public synchronized Set<String> names() {
+        return new TreeSet<>(histograms.keySet());
+    }
+
+    public synchronized String toCsv() {
+        StringBuilder csv = new StringBuilder("name,count,min,mean,p50,p90,p99,max\n");
+        histograms.forEach((name, h) -> {
+            synchronized (h) {
+                csv.append(String.format(Locale.ROOT, "%s,%d,%d,%.2f,%d,%d,%d,%d%n", name, h.count(), h.min(),
+                        h.mean(), h.percentile(50), h.percentile(90), h.percentile(99), h.max()));
+            }
+        });
+        return csv.toString();
+    }
+
+    // Summary statistics and the power of two bucket counts of each histogram
+    public synchronized String toJson() {
+        StringJoiner json = new StringJoiner(",\n", "{\n", "\n}\n");
+        histograms.forEach((name, h) -> {
+            synchronized (h) {
+                StringJoiner buckets = new StringJoiner(", ", "[", "]");
+                long[] counts = h.buckets();
+                for (int b = 0; b < counts.length; b++) {
+                    if (counts[b] != 0) buckets.add("[" + Histogram.upperBound(b) + ", " + counts[b] + "]");
+                }
+                json.add(String.format(Locale.ROOT, "  \"%s\": {\"count\": %d, \"min\": %d, \"mean\": %.2f, \"p50\": %d, " +
+                                "\"p90\": %d, \"p99\": %d, \"max\": %d, \"buckets\": %s}",
+                        name.replace("\\", "\\\\").replace("\"", "\\\""), h.count(), h.min(), h.mean(),
+                        h.percentile(50), h.percentile(90), h.percentile(99), h.max(), buckets));
+            }
+        });
+        return json.toString();
+    }
+
+    public void writeCsv(Path path) throws IOException {
+        Files.writeString(path, toCsv(), StandardCharsets.UTF_8);
+    }
+
+    public void writeJson(Path path) throws IOException {
+        Files.writeString(path, toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Every value recorded, for exact percentiles, and counts in buckets whose upper bounds are
+     * powers of two (bucket 0 holds 0 and 1, bucket b values in (2^(b-1), 2^b]).
+     */
+    public static final class Histogram {
+        private long[] values = new long[64];
+        private int count;
+        private long sum;
+        private boolean sorted = true;
+        private final long[] buckets = new long[64];
+
+        public synchronized void record(long value) {
+            if (value < 0) throw new IllegalArgumentException("negative value " + value);
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            if (count > 0 && value < values[count - 1]) sorted = false;
+            values[count++] = value;
+            sum += value;
+            buckets[bucket(value)]++;
+        }
+
+        public synchronized int count() { return count; }
+
+        public synchronized long min() { return count == 0 ? 0 : sorted()[0]; }
+
+        public synchronized long max() { return count == 0 ? 0 : sorted()[count - 1]; }
+
+        public synchronized double mean() { return count == 0 ? 0 : (double) sum / count; }
+
+        // Nearest rank percentile, 0 if nothing was recorded
+        public synchronized long percentile(double p) {
+            if (count == 0) return 0;
+            int rank = (int) Math.ceil(p / 100 * count);
+            return sorted()[Integer.max(0, rank - 1)];
+        }
+
+        synchronized long[] buckets() { return buckets.clone(); }
+
+        static long upperBound(int bucket) {
+            return bucket == 63 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        private static int bucket(long value) {
+            return value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+        }
+
+        private long[] sorted() {
+            if (!sorted) {
+                Arrays.sort(values, 0, count);
+                sorted = true;
+            }
+            return values;
+        }
+    }
+}
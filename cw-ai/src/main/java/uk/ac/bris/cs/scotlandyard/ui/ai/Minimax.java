@@ -0,0 +1,461 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+
+/**
+ * Alpha-beta search for Mr X over a {@link SearchState}, deepened one step at a time until a
+ * deadline. Each iteration searches the previous iteration's principal variation first, and the
+ * move returned is the best move of the deepest iteration that finished in time.
+ * Depth counts half-rounds: Mr X's move is one and the detective moves that follow it are another,
+ * so a round costs two.
+ * The detectives' part of a round is searched as one joint move, built one detective at a time in
+ * the order {@link SearchState#detectiveMoves} picks, so each set of destinations is reached once
+ * rather than once per move order. Each detective's moves are generated once per round and filtered
+ * by the nodes taken so far, which also rules out joint moves with two detectives on one node.
+ * Results are kept in an optional {@link TranspositionTable} so positions reached again, e.g.
+ * through other routes to the same nodes, are not searched twice.
+ * With a {@link MoveOrder}, killer moves are tried after the stored move and the rest are ranked,
+ * Mr X's by history and distance from the detectives. His double moves are ranked with his single
+ * moves once they have caused a cutoff, and after all of them otherwise. Without one his moves are
+ * searched in generation order.
+ * Leaves that aren't quiet, with Mr X's next move a reveal or a detective close to him, are
+ * searched on with a restricted set of moves, see {@link #quiesce}. A node budget ends the search
+ * like the deadline does.
+ */
+final class Minimax {
+
+    // Deepest ply searched: every round is Mr X plus up to five detectives
+    static final int MAX_PLIES = 64;
+    // Two depth per round of up to six plies, leaving a ply for quiesce's Mr X move
+    static final int MAX_DEPTH = 2 * ((MAX_PLIES - 1) / 6);
+    static final int NO_MOVE = -1;
+
+    // Nodes searched between deadline checks
+    private static final int CHECK_INTERVAL = 1024;
+    // A detective this close to Mr X makes a position noisy
+    private static final int THREAT_DISTANCE = 2;
+
+    private final SearchState state;
+    private final TransportDistances distances;
+    private final TranspositionTable table;
+    private final MoveOrder order;
+    private final long deadline;
+    private final long maxNodes;
+    private final int rootPly;
+    private final Score score = new Score();
+    // Parts of the last position scored, read back by remove
+    private final Score.Terms terms = new Score.Terms();
+
+    // One move buffer per ply, reused by every node at that ply
+    private final int[][] buffers = new int[MAX_PLIES][];
+    // pv[ply] holds the best line found from ply, up to pvLength[ply]
+    private final int[][] pv = new int[MAX_PLIES][MAX_PLIES];
+    private final int[] pvLength = new int[MAX_PLIES];
+    // Sort keys of the moves being ordered, by remove or for Mr X, and a copy of the moves
+    private long[] keys;
+    private int[] unsorted;
+    // Each detective's moves for the round being searched at a depth, see detectiveMoves
+    private final int[][][] roundMoves = new int[MAX_DEPTH + 1][][];
+    private final int[][] roundCounts = new int[MAX_DEPTH + 1][];
+    // Best line of the last completed iteration, and whether the current node is still on it
+    private final int[] previousPv = new int[MAX_PLIES];
+    private int previousPvLength;
+    private boolean followingPv;
+
+    private long nodes;
+    private long tableHits;
+    private long cutoffs;
+    private int completedDepth;
+    // Whether leaves that aren't quiet are searched on
+    private boolean extend = true;
+
+    // deadline is in System.nanoTime() units, table and order may be null to search without them
+    Minimax(SearchState state, TransportDistances distances, TranspositionTable table, MoveOrder order, long deadline) {
+        this(state, distances, table, order, deadline, Long.MAX_VALUE);
+    }
+
+    // Stops like it does at the deadline once maxNodes nodes have been searched
+    Minimax(SearchState state, TransportDistances distances, TranspositionTable table, MoveOrder order,
+            long deadline, long maxNodes) {
+        this.state = state;
+        this.distances = distances;
+        this.table = table;
+        this.order = order;
+        this.deadline = deadline;
+        this.maxNodes = maxNodes;
+        this.rootPly = state.ply();
+        state.track(distances);
+    }
+
+    // With extend false every leaf is scored as it is
+    void extend(boolean extend) {
+        this.extend = extend;
+    }
+
+    // Searches deeper until the deadline or maxDepth, returns the best move of the deepest completed search
+    int search(int maxDepth) {
+        int[] first = {NO_MOVE};
+        int count = countMoves(first);
+        // Nothing to think about with a single move
+        if (count <= 1) return first[0];
+        int best = first[0];
+        for (int depth = 1; depth <= Integer.min(maxDepth, MAX_DEPTH); depth++) {
+            int eval;
+            try {
+                followingPv = true;
+                eval = minimax(true, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            } catch (Timeout e) {
+                // Abandon the unfinished iteration
+                state.unmakeTo(rootPly);
+                break;
+            }
+            best = pv[0][0];
+            keepPv();
+            completedDepth = depth;
+            // A forced win or loss won't change with depth
+            if (Math.abs(eval) >= Score.WIN) break;
+        }
+        return best;
+    }
+
+    // Searches one root move with the window (alpha, +inf), following the kept line if it starts with move
+    int searchMove(int move, int depth, int alpha) {
+        followingPv = previousPvLength > 0 && previousPv[0] == move;
+        state.make(move);
+        int eval;
+        try {
+            eval = minimax(false, depth - 1, alpha, Integer.MAX_VALUE);
+        } catch (Timeout e) {
+            state.unmakeTo(rootPly);
+            throw e;
+        }
+        state.unmake();
+        updatePv(0, move);
+        return eval;
+    }
+
+    // Keeps the line found by the last searchMove, to be searched first next time
+    void keepPv() {
+        previousPvLength = pvLength[0];
+        System.arraycopy(pv[0], 0, previousPv, 0, previousPvLength);
+    }
+
+    int completedDepth() { return completedDepth; }
+
+    long nodes() { return nodes; }
+
+    long tableHits() { return tableHits; }
+
+    long cutoffs() { return cutoffs; }
+
+    private int countMoves(int[] first) {
+        int[] count = {0};
+        state.forEachMove(move -> {
+            if (count[0]++ == 0) first[0] = move;
+            return true;
+        });
+        return count[0];
+    }
+
+    private void visit() {
+        if (++nodes % CHECK_INTERVAL == 0 && System.nanoTime() > deadline || nodes > maxNodes) throw Timeout.INSTANCE;
+    }
+
+    private int minimax(boolean MrXTurn, int depth, int Alpha, int Beta) {
+        int ply = state.ply() - rootPly;
+        pvLength[ply] = ply;
+        // Terminates recursion at depth 0, searching on if it isn't quiet, or at a win state
+        if (depth == 0) {
+            followingPv = false;
+            return quiesce(MrXTurn, extend, Alpha, Beta);
+        }
+        visit();
+        if (state.winner() != SearchState.NONE) {
+            followingPv = false;
+            return score.score(state, distances, terms);
+        }
+        // Reuse a stored result, and its best move for ordering
+        long entry = table == null ? 0 : table.probe(state.hash());
+        int tableMove = NO_MOVE;
+        if (entry != 0) {
+            tableHits++;
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int stored = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER && stored >= Beta
+                        || bound == TranspositionTable.UPPER && stored <= Alpha) {
+                    followingPv = false;
+                    return stored;
+                }
+            }
+        }
+        // Search the last iteration's best move here first while still on its line, else the stored one
+        int pvMove = followingPv && ply < previousPvLength ? previousPv[ply] : NO_MOVE;
+        if (pvMove == NO_MOVE) followingPv = false;
+        int first = pvMove != NO_MOVE ? pvMove : tableMove != NO_MOVE && state.isLegal(tableMove) ? tableMove : NO_MOVE;
+        // Maximising Player recursively picks best eval at each level
+        if (MrXTurn) {
+            // Moves are streamed, so a cutoff stops before the rest (e.g. double moves) are generated
+            final int beta = Beta;
+            int[] node = {Alpha, Integer.MIN_VALUE, NO_MOVE}; // alpha, max eval, best move
+            if (order != null) orderedMaxChildren(first, ply, depth, node, beta);
+            else if (first == NO_MOVE || maxChild(first, ply, depth, node, beta)) {
+                state.forEachMove(move -> move == first || maxChild(move, ply, depth, node, beta));
+            }
+            int bound = node[1] >= Beta ? TranspositionTable.LOWER
+                    : node[1] <= Alpha ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+            store(depth, bound, node[1], node[2]);
+            return node[1];
+        }
+        // Minimising Player picks move with worst eval at each level
+        else {
+            int[] moves = buffers[ply];
+            if (moves == null) moves = buffers[ply] = new int[state.maxMoves()];
+            int count = detectiveMoves(moves, ply, depth);
+            int minEval = Integer.MAX_VALUE;
+            int best = NO_MOVE;
+            int beta = Beta;
+            // Improve runtime by keeping moves that make MrX score worse
+            count = remove(moves, count);
+            if (order != null) {
+                for (int slot = 1; slot >= 0; slot--) moveToFront(moves, count, order.killer(ply, slot));
+            }
+            moveToFront(moves, count, first);
+            for (int i = 0; i < count; i++) {
+                state.make(moves[i]);
+                // Recurse with lower depth and MrX turn if all detectives moved
+                int eval;
+                if (state.isMrXTurn()) eval = minimax(true, depth - 1, Alpha, beta);
+                else eval = minimax(false, depth, Alpha, beta);
+                state.unmake();
+                followingPv = false;
+                if (eval < minEval) {
+                    minEval = eval;
+                    best = moves[i];
+                    updatePv(ply, moves[i]);
+                }
+                beta = Integer.min(eval, beta);
+                // Alpha-Beta prune if necessary
+                if (beta <= Alpha) {
+                    cutoff(ply, moves[i], depth);
+                    break;
+                }
+            }
+            int bound = minEval <= Alpha ? TranspositionTable.UPPER
+                    : minEval >= Beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            store(depth, bound, minEval, best);
+            return minEval;
+        }
+    }
+
+    // Searches on from a leaf. With Mr X to move and the position not quiet, his single moves are
+    // searched, as the static score can't see him step away from a detective or hide before a
+    // reveal. With detectives to move, one that can reach Mr X captures him. Anything else is scored
+    // as it is
+    private int quiesce(boolean MrXTurn, boolean extend, int Alpha, int Beta) {
+        visit();
+        if (state.winner() != SearchState.NONE) return score.score(state, distances, terms);
+        if (!MrXTurn) return extend && canCapture() ? -Score.WIN : score.score(state, distances, terms);
+        if (!extend || isQuiet()) return score.score(state, distances, terms);
+        int[] node = {Alpha, Integer.MIN_VALUE}; // alpha, max eval
+        // Singles come first, so the doubles are never generated
+        state.forEachMove(move -> {
+            if (SearchState.isDouble(move)) return false;
+            state.make(move);
+            int eval = quiesce(false, true, node[0], Beta);
+            state.unmake();
+            node[1] = Integer.max(node[1], eval);
+            node[0] = Integer.max(node[0], eval);
+            return Beta > node[0];
+        });
+        // Only double moves left, not worth extending for
+        return node[1] == Integer.MIN_VALUE ? score.score(state, distances, terms) : node[1];
+    }
+
+    // True if a detective still to move is one move from Mr X
+    private boolean canCapture() {
+        for (int p = 1; p < state.players(); p++) {
+            if ((state.remaining() & 1 << p) == 0) continue;
+            if (state.detectiveDistance(p) == 1) return true;
+        }
+        return false;
+    }
+
+    // Quiet if Mr X's next move is hidden and no detective is within THREAT_DISTANCE of him
+    private boolean isQuiet() {
+        if (state.isRevealNext()) return false;
+        for (int p = 1; p < state.players(); p++) {
+            if (state.detectiveDistance(p) <= THREAT_DISTANCE) return false;
+        }
+        return true;
+    }
+
+    // Writes the detectives' next moves, see SearchState.detectiveMoves, from the lists made at the
+    // start of the round
+    private int detectiveMoves(int[] moves, int ply, int depth) {
+        if (roundMoves[depth] == null) {
+            roundMoves[depth] = new int[state.players()][state.maxSingleMoves()];
+            roundCounts[depth] = new int[state.players()];
+        }
+        int[][] lists = roundMoves[depth];
+        int[] counts = roundCounts[depth];
+        if (ply == 0 || state.remaining() == state.detectivesMask()) {
+            for (int p = 1; p < state.players(); p++) {
+                if ((state.remaining() & 1 << p) != 0) counts[p] = state.movesIgnoringDetectives(p, lists[p]);
+            }
+        }
+        return state.detectiveMoves(lists, counts, moves);
+    }
+
+    private void store(int depth, int bound, int eval, int move) {
+        if (table != null) table.store(state.hash(), depth, bound, eval, move);
+    }
+
+    // Searches one Mr X move, node holds alpha and max eval, returns false on a cutoff
+    private boolean maxChild(int move, int ply, int depth, int[] node, int Beta) {
+        state.make(move);
+        int eval = minimax(false, depth - 1, node[0], Beta);
+        state.unmake();
+        followingPv = false;
+        if (eval > node[1]) {
+            node[1] = eval;
+            node[2] = move;
+            updatePv(ply, move);
+        }
+        node[0] = Integer.max(node[0], eval);
+        // Alpha-Beta prune if necessary
+        if (Beta > node[0]) return true;
+        cutoff(ply, move, depth);
+        return false;
+    }
+
+    private void cutoff(int ply, int move, int depth) {
+        cutoffs++;
+        if (order != null) order.cutoff(ply, move, depth);
+    }
+
+    // Searches Mr X's moves: first, then this ply's killers, then single moves and the double moves
+    // that have caused a cutoff ranked together by MoveOrder, then the other double moves ranked the
+    // same way, stopping at a cutoff
+    private void orderedMaxChildren(int first, int ply, int depth, int[] node, int Beta) {
+        if (first != NO_MOVE && !maxChild(first, ply, depth, node, Beta)) return;
+        for (int slot = 0; slot < 2; slot++) {
+            int killer = order.killer(ply, slot);
+            if (killer == NO_MOVE || killer == first || !state.isLegal(killer)) continue;
+            if (!maxChild(killer, ply, depth, node, Beta)) return;
+        }
+        int[] moves = buffers[ply];
+        if (moves == null) moves = buffers[ply] = new int[state.maxMoves()];
+        int[] ends = mrXMoves(moves);
+        if (rankedMaxChildren(moves, 0, ends[0], first, ply, depth, node, Beta)) {
+            rankedMaxChildren(moves, ends[1], moves.length, first, ply, depth, node, Beta);
+        }
+    }
+
+    // Ranks moves[from, to) and searches those not already searched, returning false at a cutoff
+    private boolean rankedMaxChildren(int[] moves, int from, int to, int first, int ply, int depth, int[] node,
+            int Beta) {
+        rank(moves, from, to);
+        for (int i = from; i < to; i++) {
+            int move = moves[i];
+            if (move == first || order.isKiller(ply, move)) continue;
+            if (!maxChild(move, ply, depth, node, Beta)) return false;
+        }
+        return true;
+    }
+
+    // Writes Mr X's single moves and the double moves with history from the front of moves, and the
+    // other double moves at the back, each in generation order. Returns where the front part ends
+    // and the back part starts. Which part a double goes in is fixed here, as searching the front
+    // can give it history
+    private int[] mrXMoves(int[] moves) {
+        int[] ends = {0, moves.length};
+        state.forEachMove(move -> {
+            if (SearchState.isDouble(move) && order.history(move) == 0) moves[--ends[1]] = move;
+            else moves[ends[0]++] = move;
+            return true;
+        });
+        for (int i = ends[1], j = moves.length - 1; i < j; i++, j--) {
+            int move = moves[i];
+            moves[i] = moves[j];
+            moves[j] = move;
+        }
+        return ends;
+    }
+
+    // Orders moves[from, to) best first by MoveOrder.mrXScore
+    private void rank(int[] moves, int from, int to) {
+        long[] keys = keys();
+        for (int i = from; i < to; i++) {
+            keys[i - from] = (long) -order.mrXScore(state, distances, moves[i]) << 32 | i - from;
+        }
+        reorder(moves, from, to - from);
+    }
+
+    // Best line from ply is move followed by the best line of its child
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        int length = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+        pvLength[ply] = length;
+    }
+
+    // Swaps move, if among the first count moves, to the front
+    static void moveToFront(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] != move) continue;
+            moves[i] = moves[0];
+            moves[0] = move;
+            return;
+        }
+    }
+
+    // Scores detective moves without making them, see Score.scoreAfter. Orders the moves by the
+    // score they leave Mr X, lowest first, and returns how many lower it below the parent's score
+    int remove(int[] moves, int count) {
+        int parent = score.score(state, distances, terms);
+        long[] keys = keys();
+        // Equal scores go by history and then generation order, so put the moves in that order first
+        if (order != null) {
+            for (int i = 0; i < count; i++) keys[i] = (long) -order.history(moves[i]) << 32 | i;
+            reorder(moves, 0, count);
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int child = score.scoreAfter(state, distances, terms, moves[i]);
+            if (child < parent) kept++;
+            keys[i] = (long) child << 32 | i;
+        }
+        reorder(moves, 0, count);
+        // Detectives still have to move when no move improves on the parent
+        return kept == 0 ? count : kept;
+    }
+
+    private long[] keys() {
+        if (keys == null) {
+            keys = new long[state.maxMoves()];
+            unsorted = new int[state.maxMoves()];
+        }
+        return keys;
+    }
+
+    // Sorts keys[0, count), each a score over the index of its move in moves[from, from + count),
+    // and puts the moves in that order. Ties go by index, so by the order the moves were in
+    private void reorder(int[] moves, int from, int count) {
+        Arrays.sort(keys, 0, count);
+        System.arraycopy(moves, from, unsorted, 0, count);
+        for (int i = 0; i < count; i++) moves[from + i] = unsorted[(int) keys[i]];
+    }
+
+    // Thrown to unwind the search once the deadline has passed
+    static final class Timeout extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final Timeout INSTANCE = new Timeout();
+
+        private Timeout() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.annotation.Nonnull;
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * Mr X AI using Monte Carlo tree search, see {@link MonteCarloTree}.
+ * Searches until the move timeout, with one independent tree per thread (root parallel); the move
+ * played is the root move with the most visits summed over every tree.
+ * Uses the time fraction and thread count properties of {@link TheRealSlimShady}. The trees share
+ * one node cap, so memory doesn't grow with the thread count.
+ */
+public class MonteCarloShady implements Ai, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// Tree nodes over all threads, override with -Dscotlandyard.ai.treeNodes=<nodes>
+	static final String TREE_NODES_PROPERTY = "scotlandyard.ai.treeNodes";
+
+	private final double timeFraction;
+	private final int threads;
+	private final int treeNodes;
+	// Built on first use
+	private transient ForkJoinPool pool;
+	private transient SplittableRandom seeds;
+
+	public MonteCarloShady() {
+		this(TheRealSlimShady.timeFraction(),
+				Integer.getInteger(TheRealSlimShady.THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+	}
+
+	public MonteCarloShady(double timeFraction, int threads) {
+		this(timeFraction, threads, Integer.getInteger(TREE_NODES_PROPERTY, MonteCarloTree.MAX_NODES));
+	}
+
+	public MonteCarloShady(double timeFraction, int threads, int treeNodes) {
+		if (timeFraction <= 0 || timeFraction > 1) throw new IllegalArgumentException("time fraction must be in (0, 1]");
+		if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+		if (treeNodes < threads) throw new IllegalArgumentException("tree nodes must be at least the thread count");
+		this.timeFraction = timeFraction;
+		this.threads = threads;
+		this.treeNodes = treeNodes;
+	}
+
+	@Nonnull
+	@Override
+	public String name() {
+		return "MonteCarloShady";
+	}
+
+	@Nonnull
+	@Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		long deadline = System.nanoTime() + (long) (timeoutPair.right().toNanos(timeoutPair.left()) * timeFraction);
+		if (seeds == null) seeds = new SplittableRandom();
+		SearchState state = SearchState.from(board);
+		int[] visits = search(state, TransportDistances.standard(), deadline, Long.MAX_VALUE, seeds.nextLong());
+		int[] moves = new int[state.maxMoves()];
+		// Same order as the roots of the trees
+		int count = state.availableMoves(moves);
+		int best = 0;
+		for (int i = 1; i < count; i++) if (visits[i] > visits[best]) best = i;
+		return state.toMove(moves[best]);
+	}
+
+	// Searches one tree per thread, returns root visit counts summed in root move order
+	int[] search(SearchState state, TransportDistances distances, long deadline, long iterations, long seed) {
+		List<Callable<int[]>> trees = new ArrayList<>(threads);
+		for (int t = 0; t < threads; t++) {
+			long treeSeed = seed + t;
+			SearchState copy = t == 0 ? state : state.copy();
+			trees.add(() -> {
+				MonteCarloTree tree = new MonteCarloTree(copy, distances, treeSeed, treeNodes / threads);
+				tree.search(deadline, iterations);
+				int[] visits = new int[copy.maxMoves()];
+				tree.rootVisits(visits);
+				return visits;
+			});
+		}
+		int[] total = new int[state.maxMoves()];
+		try {
+			if (threads == 1) add(total, trees.get(0).call());
+			else {
+				if (pool == null) pool = new ForkJoinPool(threads);
+				for (Future<int[]> visits : pool.invokeAll(trees)) add(total, visits.get());
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return total;
+	}
+
+	private static void add(int[] total, int[] visits) {
+		for (int i = 0; i < total.length; i++) total[i] += visits[i];
+	}
+
+	@Override
+	public void onTerminate() {
+		if (pool != null) pool.shutdownNow();
+		pool = null;
+	}
+
+}
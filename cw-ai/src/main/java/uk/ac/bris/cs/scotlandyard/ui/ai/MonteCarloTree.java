@@ -0,0 +1,229 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Monte Carlo tree search over a {@link SearchState}, from Mr X's point of view.
+ * Each iteration walks down the tree by UCT, adds the children of the node it stops at, plays a
+ * fast random game from one of them and counts a win or loss back up the path. Playouts follow the
+ * detectives' limited knowledge: they move at random until Mr X is first revealed and then head for
+ * his last revealed location, so hiding between reveal rounds pays.
+ * Mr X plays random single moves, avoiding nodes next to a detective when he can.
+ * Detectives' joint moves are built in the order {@link SearchState#detectiveMoves} picks, as in
+ * {@link Minimax}.
+ * Nodes live in flat arrays, the children of a node are contiguous.
+ */
+final class MonteCarloTree {
+
+    // UCT exploration weight
+    private static final double EXPLORATION = Math.sqrt(2);
+    // Iterations between deadline checks
+    private static final int CHECK_INTERVAL = 16;
+    // Default node cap, nodes stop being added past the cap and the tree keeps being walked and played out from
+    static final int MAX_NODES = 1 << 20;
+
+    private final SearchState state;
+    private final TransportDistances distances;
+    private final SplittableRandom random;
+    private final int rootPly;
+    private final int maxNodes;
+
+    // Node arrays: move into the node, first child (-1 until expanded), child count, visits, Mr X wins
+    private int[] moves = new int[1 << 12];
+    private int[] firstChild = new int[1 << 12];
+    private int[] childCount = new int[1 << 12];
+    private int[] visits = new int[1 << 12];
+    private double[] wins = new double[1 << 12];
+    private int size;
+
+    // Path of the current iteration, and move buffers for expansion and playouts
+    private final int[] path = new int[Minimax.MAX_PLIES * 8];
+    private final int[] buffer;
+    private final int[] choices;
+    // Each remaining detective's moves ignoring detectives, see detectiveMoves
+    private final int[][] detectiveLists;
+    private final int[] detectiveCounts;
+    private long iterations;
+
+    MonteCarloTree(SearchState state, TransportDistances distances, long seed) {
+        this(state, distances, seed, MAX_NODES);
+    }
+
+    // Adds at most maxNodes nodes, about 24 bytes each
+    MonteCarloTree(SearchState state, TransportDistances distances, long seed, int maxNodes) {
+        if (maxNodes < 1) throw new IllegalArgumentException("maxNodes must be at least 1");
+        this.maxNodes = maxNodes;
+        this.state = state;
+        this.distances = distances;
+        this.random = new SplittableRandom(seed);
+        this.rootPly = state.ply();
+        this.buffer = new int[state.maxMoves()];
+        this.choices = new int[state.maxMoves()];
+        this.detectiveLists = new int[state.players()][state.maxSingleMoves()];
+        this.detectiveCounts = new int[state.players()];
+        size = 1;
+        moves[0] = Minimax.NO_MOVE;
+        firstChild[0] = -1;
+    }
+
+    // Runs iterations until the deadline (System.nanoTime() units) or maxIterations
+    void search(long deadline, long maxIterations) {
+        for (long i = 0; i < maxIterations; i++) {
+            if (i % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) return;
+            iterate();
+        }
+    }
+
+    long iterations() { return iterations; }
+
+    int nodes() { return size; }
+
+    // Root moves in generation order, with their visit counts in the same order
+    int rootMoves(int[] out) {
+        expand(0);
+        for (int i = 0; i < childCount[0]; i++) out[i] = moves[firstChild[0] + i];
+        return childCount[0];
+    }
+
+    int rootVisits(int[] out) {
+        expand(0);
+        for (int i = 0; i < childCount[0]; i++) out[i] = visits[firstChild[0] + i];
+        return childCount[0];
+    }
+
+    private void iterate() {
+        iterations++;
+        int length = 0;
+        int node = 0;
+        path[length++] = node;
+        // Selection: follow UCT through expanded nodes
+        while (firstChild[node] >= 0 && childCount[node] > 0) {
+            node = select(node);
+            state.make(moves[node]);
+            path[length++] = node;
+        }
+        // Expansion: add the children of a node visited before, and carry on into one of them
+        if (state.winner() == SearchState.NONE && (visits[node] > 0 || node == 0) && expand(node)) {
+            node = firstChild[node] + random.nextInt(childCount[node]);
+            state.make(moves[node]);
+            path[length++] = node;
+        }
+        double result = playout();
+        // Backpropagation: a node's wins are counted for the player who moved into it
+        for (int i = 0; i < length; i++) {
+            int n = path[i];
+            visits[n]++;
+            boolean mrXMoved = n != 0 && SearchState.player(moves[n]) == 0;
+            wins[n] += mrXMoved ? result : 1 - result;
+        }
+        state.unmakeTo(rootPly);
+    }
+
+    // Picks the child with the best UCT value for the player to move, unvisited children first
+    private int select(int node) {
+        double logVisits = Math.log(Math.max(1, visits[node]));
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+            if (visits[child] == 0) return child;
+            double value = wins[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // Adds the children of node, returns false if there are none or the tree is full
+    private boolean expand(int node) {
+        if (firstChild[node] >= 0) return childCount[node] > 0;
+        int count = state.isMrXTurn() ? state.availableMoves(buffer) : detectiveMoves(buffer);
+        if (count == 0 || size + count > maxNodes) return false;
+        if (size + count > moves.length) grow(size + count);
+        firstChild[node] = size;
+        childCount[node] = count;
+        for (int i = 0; i < count; i++) {
+            moves[size] = buffer[i];
+            firstChild[size] = -1;
+            childCount[size] = 0;
+            visits[size] = 0;
+            wins[size] = 0;
+            size++;
+        }
+        return true;
+    }
+
+    private void grow(int minimum) {
+        int capacity = Integer.min(maxNodes, Integer.max(minimum, moves.length * 2));
+        moves = Arrays.copyOf(moves, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        visits = Arrays.copyOf(visits, capacity);
+        wins = Arrays.copyOf(wins, capacity);
+    }
+
+    // Writes the detectives' next moves, see SearchState.detectiveMoves
+    private int detectiveMoves(int[] out) {
+        if (state.winner() != SearchState.NONE) return 0;
+        for (int p = 1; p < state.players(); p++) {
+            if ((state.remaining() & 1 << p) != 0) detectiveCounts[p] = state.movesIgnoringDetectives(p, detectiveLists[p]);
+        }
+        return state.detectiveMoves(detectiveLists, detectiveCounts, out);
+    }
+
+    // Plays random moves to the end of the game, returns 1 if Mr X won and 0 if not
+    private double playout() {
+        int winner;
+        while ((winner = state.winner()) == SearchState.NONE) {
+            state.make(state.isMrXTurn() ? mrXPlayoutMove() : detectivePlayoutMove());
+        }
+        return winner == SearchState.MRX_WINS ? 1 : 0;
+    }
+
+    // A random single move, away from the detectives if possible
+    private int mrXPlayoutMove() {
+        int[] count = {0, 0}; // all single moves, safe ones at the front
+        state.forEachMove(move -> {
+            if (SearchState.isDouble(move)) return false;
+            choices[count[0]] = move;
+            if (!nextToDetective(SearchState.destination1(move))) {
+                choices[count[0]] = choices[count[1]];
+                choices[count[1]++] = move;
+            }
+            count[0]++;
+            return true;
+        });
+        int choose = count[1] > 0 ? count[1] : count[0];
+        return choices[random.nextInt(choose)];
+    }
+
+    private boolean nextToDetective(int node) {
+        CompactGraph graph = state.graph();
+        for (int edge = graph.edgesStart(node); edge < graph.edgesEnd(node); edge++) {
+            if (state.isOccupied(graph.target(edge))) return true;
+        }
+        return false;
+    }
+
+    // Random before Mr X's first reveal, then the move closest to where he was last seen
+    private int detectivePlayoutMove() {
+        int count = detectiveMoves(choices);
+        int target = state.lastRevealedLocation();
+        if (target == 0) return choices[random.nextInt(count)];
+        int best = choices[0];
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = choices[i];
+            int p = SearchState.player(move);
+            int distance = distances.distance(state.transportMask(p, SearchState.ticket1(move)),
+                    SearchState.destination1(move), target);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = move;
+            }
+        }
+        return best;
+    }
+}
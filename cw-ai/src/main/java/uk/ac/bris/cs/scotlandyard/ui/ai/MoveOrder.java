@@ -0,0 +1,88 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Move ordering state for one {@link Minimax}: two killer moves per ply, the last moves to cause a
+ * cutoff there, and a history table of how much cutoffs each (piece, destination, ticket) caused,
+ * weighted by the depth left, with Mr X's double moves kept apart under both their tickets. Both
+ * carry over between the iterations of a search.
+ * Also ranks Mr X's moves by their static gain, how far the destination is from the nearest
+ * detective, with the history score first. Secret and double moves go after the others unless
+ * they have caused a cutoff, since they spend the tickets Mr X has least of.
+ */
+final class MoveOrder {
+
+    private static final int TICKETS = Ticket.values().length;
+    private static final int SECRET = Ticket.SECRET.ordinal();
+    // Static gain is capped so it fits under one point of history
+    private static final int GAIN_BITS = 4;
+    private static final int MAX_GAIN = (1 << GAIN_BITS) - 1;
+    // History is halved past this so it can be shifted over the gain
+    private static final int MAX_HISTORY = 1 << 24;
+    // Scores below this are unproven secret or double moves
+    private static final int LAST = Integer.MIN_VALUE / 2;
+
+    private final int nodes;
+    private final int[][] killers = new int[Minimax.MAX_PLIES][2];
+    // Singles at [(player * TICKETS + ticket) * nodes + destination], then Mr X's doubles at
+    // doubles + [(ticket1 * TICKETS + ticket2) * nodes + destination]
+    private final int[] history;
+    private final int doubles;
+
+    MoveOrder(SearchState state) {
+        this.nodes = state.graph().size();
+        this.doubles = state.players() * TICKETS * nodes;
+        this.history = new int[doubles + TICKETS * TICKETS * nodes];
+        for (int[] ply : killers) Arrays.fill(ply, Minimax.NO_MOVE);
+    }
+
+    int killer(int ply, int slot) { return killers[ply][slot]; }
+
+    boolean isKiller(int ply, int move) {
+        return killers[ply][0] == move || killers[ply][1] == move;
+    }
+
+    // Records a move that caused a cutoff at ply with depth half-rounds left
+    void cutoff(int ply, int move, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int i = index(move);
+        // Halve everything rather than overflow, keeping the order
+        if (history[i] > MAX_HISTORY) {
+            for (int j = 0; j < history.length; j++) history[j] >>= 1;
+        }
+        history[i] += depth * depth;
+    }
+
+    int history(int move) { return history[index(move)]; }
+
+    // Scores a Mr X move, higher is searched first
+    int mrXScore(SearchState state, TransportDistances distances, int move) {
+        int h = history(move);
+        boolean risky = SearchState.isDouble(move) || SearchState.ticket1(move) == SECRET;
+        if (risky && h == 0) return LAST + gain(state, distances, SearchState.destination(move));
+        return (h << GAIN_BITS) + gain(state, distances, SearchState.destination(move));
+    }
+
+    // Distance from destination to the nearest detective, capped
+    private static int gain(SearchState state, TransportDistances distances, int destination) {
+        int closest = MAX_GAIN;
+        for (int p = 1; p < state.players(); p++) {
+            closest = Integer.min(closest, distances.distance(state.transportMask(p), state.location(p), destination));
+        }
+        return closest;
+    }
+
+    // Double moves are kept under their final destination and both tickets, apart from singles
+    private int index(int move) {
+        int ticket = SearchState.ticket1(move);
+        if (SearchState.isDouble(move)) {
+            return doubles + (ticket * TICKETS + SearchState.ticket2(move)) * nodes + SearchState.destination(move);
+        }
+        return (SearchState.player(move) * TICKETS + ticket) * nodes + SearchState.destination(move);
+    }
+}
@@ -0,0 +1,125 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.*;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.util.*;
+
+/**
+ * The nodes Mr X could be on, as far as the detectives know, kept as a bitset over the nodes.
+ * Starts from the possible starting locations and follows {@link Board#getMrXTravelLog()}: a
+ * reveal narrows it to one node, a hidden move spreads it along the edges the ticket can use,
+ * which is an OR of the per-ticket neighbour masks from {@link CompactGraph#reach(int, int)}. Nodes detectives stand on now are removed;
+ * where they stood when Mr X moved through isn't known, so earlier steps keep those nodes.
+ * Call {@link #update(Board)} with each new board; only log entries not seen yet are applied.
+ * A board is taken to be from the same game if its log starts with the entries applied so far.
+ */
+public final class MrXBelief {
+
+    private final GameSetup setup;
+    private final CompactGraph graph;
+    private final int words;
+    private final long[] starts;
+    private final long[] possible;
+    private final long[] scratch;
+    // Log entries applied so far
+    private final List<LogEntry> seen = new ArrayList<>();
+
+    public MrXBelief(GameSetup setup, Collection<Integer> starts) {
+        this.setup = setup;
+        this.graph = CompactGraph.of(setup.graph);
+        this.words = graph.words();
+        this.starts = new long[words];
+        for (int node : starts) if (node > 0 && node < graph.size()) set(this.starts, node);
+        this.possible = this.starts.clone();
+        this.scratch = new long[words];
+    }
+
+    // Starts from the standard Mr X starting locations
+    public static MrXBelief of(Board board) {
+        return new MrXBelief(board.getSetup(), ScotlandYard.MRX_LOCATIONS);
+    }
+
+    // True if this belief was built for the game the board is from
+    public boolean isFor(Board board) {
+        List<LogEntry> log = board.getMrXTravelLog();
+        return board.getSetup() == setup && log.size() >= seen.size() && log.subList(0, seen.size()).equals(seen);
+    }
+
+    // Applies the log entries added since the last update, then removes detective locations
+    public void update(Board board) {
+        if (!isFor(board)) throw new IllegalArgumentException("board is from another game");
+        long[] detectives = new long[words];
+        for (Piece piece : board.getPlayers()) {
+            if (piece.isDetective()) board.getDetectiveLocation((Piece.Detective) piece).ifPresent(l -> set(detectives, l));
+        }
+        List<LogEntry> log = board.getMrXTravelLog();
+        // Before Mr X's first move nothing was learnt, and a new game with an empty log looks the same
+        if (seen.isEmpty()) System.arraycopy(starts, 0, possible, 0, words);
+        for (LogEntry entry : log.subList(seen.size(), log.size())) {
+            if (entry.location().isPresent()) reveal(entry.location().get());
+            else move(entry.ticket());
+            seen.add(entry);
+        }
+        remove(detectives);
+    }
+
+    // Mr X was seen at node
+    void reveal(int node) {
+        Arrays.fill(possible, 0);
+        set(possible, node);
+    }
+
+    // Mr X moved with ticket
+    void move(Ticket ticket) {
+        Arrays.fill(scratch, 0);
+        for (int w = 0; w < words; w++) {
+            for (long bits = possible[w]; bits != 0; bits &= bits - 1) {
+                long[] targets = graph.reach(ticket.ordinal(), w * 64 + Long.numberOfTrailingZeros(bits));
+                for (int i = 0; i < words; i++) scratch[i] |= targets[i];
+            }
+        }
+        System.arraycopy(scratch, 0, possible, 0, words);
+    }
+
+    private void remove(long[] occupied) {
+        boolean empty = true;
+        for (int w = 0; w < words; w++) {
+            possible[w] &= ~occupied[w];
+            empty &= possible[w] == 0;
+        }
+        // Only if Mr X started somewhere unexpected: lost track, so he could be anywhere free
+        if (empty) {
+            for (int node = 1; node < graph.size(); node++) set(possible, node);
+            for (int w = 0; w < words; w++) possible[w] &= ~occupied[w];
+        }
+    }
+
+    public boolean contains(int node) {
+        return node >= 0 && node < graph.size() && (possible[node >>> 6] & 1L << node) != 0;
+    }
+
+    // Returns how many nodes Mr X could be on
+    public int size() {
+        int size = 0;
+        for (long word : possible) size += Long.bitCount(word);
+        return size;
+    }
+
+    // Returns the possible nodes in ascending order
+    public int[] nodes() {
+        int[] nodes = new int[size()];
+        int i = 0;
+        for (int w = 0; w < words; w++) {
+            for (long bits = possible[w]; bits != 0; bits &= bits - 1) nodes[i++] = w * 64 + Long.numberOfTrailingZeros(bits);
+        }
+        return nodes;
+    }
+
+    // Returns a copy of the bitset, bit n of word n / 64 is node n
+    public long[] bits() { return possible.clone(); }
+
+    private static void set(long[] bits, int node) {
+        bits[node >>> 6] |= 1L << node;
+    }
+}
@@ -83,8 +83,14 @@ public final class MyGameState implements Board.GameState {
             if (remaining.contains(player.piece())) tempMoves.addAll(makeSingleMoves(setup, detectives, player, player.location()));
         }
 
+        // Remaining detectives who can't move pass the turn back to mrX
+        if (tempMoves.isEmpty() && !remaining.contains(mrX.piece())) {
+            this.remaining = ImmutableSet.of(mrX.piece());
+            tempMoves.addAll(makeSingleMoves(setup, detectives, mrX, mrX.location()));
+        }
+
         // Double moves if mrX remaining
-        if (remaining.contains(mrX.piece())) tempMoves.addAll(makeDoubleMoves(setup, detectives, mrX, mrX.location(), log));
+        if (this.remaining.contains(mrX.piece())) tempMoves.addAll(makeDoubleMoves(setup, detectives, mrX, mrX.location(), log));
         this.moves = ImmutableSet.copyOf(tempMoves);
 
         // Winner checks
@@ -111,11 +117,10 @@ public final class MyGameState implements Board.GameState {
         return(remaining.contains(Piece.MrX.MRX) && log.size() == setup.moves.size());
     }
 
-    // True if all detectives have no tickets
+    // True if no detective has a move left
     private boolean isStuck(Piece.Detective p) {
         for (Player det : this.detectives) {
-            if (!det.tickets().values().stream().filter(v -> v != 0).collect(Collectors.toSet()).isEmpty())
-                return false;
+            if (!makeSingleMoves(setup, detectives, det, det.location()).isEmpty()) return false;
         }
         return true;
     }
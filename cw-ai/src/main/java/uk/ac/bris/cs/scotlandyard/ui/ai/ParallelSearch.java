@@ -0,0 +1,153 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * Mr X's search with the root moves split across a {@link ForkJoinPool}.
+ * Each iteration searches the previous best move first on the calling thread (young brothers
+ * wait), then the other root moves as pool tasks. Every task runs a {@link Minimax} over its own
+ * copy of the state, they share the {@link TranspositionTable} and the root alpha, which is
+ * raised atomically so later moves are searched with the best score found so far.
+ * Without a pool the same moves are searched in the same order on the calling thread, so the
+ * result only depends on the position.
+ */
+final class ParallelSearch {
+
+    private final SearchState state;
+    private final TransportDistances distances;
+    private final TranspositionTable table;
+    private final long deadline;
+    private final long maxNodes;
+    private final ForkJoinPool pool;
+    private final Minimax main;
+
+    // Minimax instances not in use by a task, and every one made
+    private final Queue<Minimax> idle = new ConcurrentLinkedQueue<>();
+    private final List<Minimax> workers = Collections.synchronizedList(new ArrayList<>());
+
+    // Best root score so far in this iteration, and the root move index it came from
+    private final AtomicInteger alpha = new AtomicInteger();
+    private int bestEval;
+    private int bestIndex;
+    private int completedDepth;
+
+    // pool may be null to search on the calling thread
+    ParallelSearch(SearchState state, TransportDistances distances, TranspositionTable table,
+                   long deadline, ForkJoinPool pool) {
+        this(state, distances, table, deadline, Long.MAX_VALUE, pool);
+    }
+
+    // maxNodes is the node budget of each thread's Minimax
+    ParallelSearch(SearchState state, TransportDistances distances, TranspositionTable table,
+                   long deadline, long maxNodes, ForkJoinPool pool) {
+        this.state = state;
+        this.distances = distances;
+        this.table = table;
+        this.deadline = deadline;
+        this.maxNodes = maxNodes;
+        this.pool = pool;
+        this.main = new Minimax(state, distances, table, new MoveOrder(state), deadline, maxNodes);
+        workers.add(main);
+    }
+
+    // Searches deeper until the deadline or maxDepth, returns the best move of the deepest completed search
+    int search(int maxDepth) {
+        int[] moves = new int[state.maxMoves()];
+        int count = state.availableMoves(moves);
+        if (count == 0) return Minimax.NO_MOVE;
+        int best = moves[0];
+        if (count == 1) return best;
+        for (int depth = 1; depth <= Integer.min(maxDepth, Minimax.MAX_DEPTH); depth++) {
+            Minimax.moveToFront(moves, count, best);
+            try {
+                bestEval = Integer.MIN_VALUE;
+                bestIndex = -1;
+                int eval = main.searchMove(moves[0], depth, Integer.MIN_VALUE);
+                main.keepPv();
+                alpha.set(eval);
+                offer(eval, 0);
+                if (pool == null) {
+                    for (int i = 1; i < count; i++) searchMove(main, moves, i, depth);
+                } else {
+                    searchInPool(moves, count, depth);
+                }
+            } catch (Minimax.Timeout e) {
+                break;
+            }
+            best = moves[bestIndex];
+            completedDepth = depth;
+            // A forced win or loss won't change with depth
+            if (Math.abs(bestEval) >= Score.WIN) break;
+        }
+        return best;
+    }
+
+    int completedDepth() { return completedDepth; }
+
+    long nodes() { return sum(Minimax::nodes); }
+
+    long cutoffs() { return sum(Minimax::cutoffs); }
+
+    long tableHits() { return sum(Minimax::tableHits); }
+
+    // Sums a counter over every Minimax used
+    private long sum(ToLongFunction<Minimax> counter) {
+        synchronized (workers) {
+            return workers.stream().mapToLong(counter).sum();
+        }
+    }
+
+    private void searchInPool(int[] moves, int count, int depth) {
+        List<Callable<Void>> tasks = new ArrayList<>(count - 1);
+        for (int i = 1; i < count; i++) {
+            int index = i;
+            tasks.add(() -> {
+                Minimax worker = idle.poll();
+                if (worker == null) {
+                    SearchState copy = state.copy();
+                    worker = new Minimax(copy, distances, table, new MoveOrder(copy), deadline, maxNodes);
+                    workers.add(worker);
+                }
+                try {
+                    searchMove(worker, moves, index, depth);
+                } finally {
+                    idle.add(worker);
+                }
+                return null;
+            });
+        }
+        // Every task has finished once invokeAll returns, a timeout in any of them ends the iteration
+        for (Future<Void> result : pool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Minimax.Timeout timeout) throw timeout;
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Minimax.Timeout.INSTANCE;
+            }
+        }
+    }
+
+    private void searchMove(Minimax minimax, int[] moves, int index, int depth) {
+        int bound = alpha.get();
+        int eval = minimax.searchMove(moves[index], depth, bound);
+        // Scores at or below the alpha searched with are only upper bounds, and can't be best
+        if (eval > bound) {
+            alpha.accumulateAndGet(eval, Integer::max);
+            offer(eval, index);
+        }
+    }
+
+    // Keeps the highest score, ties go to the move searched first in order
+    private synchronized void offer(int eval, int index) {
+        if (eval > bestEval || eval == bestEval && index < bestIndex) {
+            bestEval = eval;
+            bestIndex = index;
+        }
+    }
+}
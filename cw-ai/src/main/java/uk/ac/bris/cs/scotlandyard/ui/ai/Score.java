@@ -7,29 +7,55 @@ import java.util.*;
 
 public class Score {
 
+    // Score of a game Mr X has won, negated when the detectives have won
+    public static final int WIN = 10000;
+    // Candidates past this many count no more towards the belief terms
+    static final int MAX_CANDIDATES = 32;
+    // A detective that can't reach Mr X, or is this far from every candidate, counts as this far
+    static final int MAX_DISTANCE = 8;
+
+    // Parts of a position scored from a SearchState, filled in by score and read by scoreAfter for the
+    // same position. Score keeps no state of its own, so each caller, e.g. each search thread, keeps
+    // its own Terms
+    public static final class Terms {
+        private int MrXLocation;
+        private int total;
+        private int freedom;
+        private int closest;
+        private int secondClosest;
+        private int closestPlayer;
+        private int[] detectiveDistances = new int[0];
+        private int belief;
+        // Per detective scratch for the belief terms: distance table and distance to its nearest candidate
+        private DistanceTable[] tables = new DistanceTable[0];
+        private int[] nearest = new int[0];
+    }
+
     public int score(Board.GameState state) {
         // Return high score if MrX wins and low if loses
-        if (state.getWinner().contains(Piece.Detective.BLUE)) return -10000;
-        else return 10000;
+        if (state.getWinner().contains(Piece.Detective.BLUE)) return -WIN;
+        else return WIN;
     }
 
-    public int score(Board.GameState state, List<List<Integer>> distances, int MrXLocation) {
-        if (state.getWinner().contains(Piece.Detective.BLUE)) return -10000;
-        else if (state.getWinner().contains(Piece.MrX.MRX)) return 10000;
-        // Get distances from current MrX location and detective locations
-        List<Integer> MrXDistances = distances.get(MrXLocation - 1);
+    public int score(Board.GameState state, TransportDistances distances, int MrXLocation) {
+        if (state.getWinner().contains(Piece.Detective.BLUE)) return -WIN;
+        else if (state.getWinner().contains(Piece.MrX.MRX)) return WIN;
+        // Get detective locations
         List<Integer> locations = getDetectiveLocations(state);
-        // Calculate total distance and closest
+        // Calculate total distance and closest, using only transports each detective has tickets for
         int total = 0;
         int closest = Integer.MAX_VALUE;
-        for (int location: locations) {
-            int distance = distances.get(MrXLocation - 1).get(location);
+        for (Piece piece : state.getPlayers()) {
+            if (!piece.isDetective()) continue;
+            int location = state.getDetectiveLocation((Piece.Detective) piece).get();
+            int mask = TransportDistances.mask(state.getPlayerTickets(piece).get(), false);
+            int distance = reachable(distances.distance(mask, location, MrXLocation));
             total += distance;
             closest = Integer.min(closest, distance);
         }
         // Find last MrX location and freedom
         Integer lastMrX = getMrXLocation(state);
-        if (lastMrX != null) total += MrXDistances.get(lastMrX);
+        if (lastMrX != null) total += distances.forMask(CompactGraph.ALL_TRANSPORTS).distance(MrXLocation, lastMrX);
         int freedom = state.getSetup().graph.adjacentNodes(MrXLocation).stream().filter(l -> !locations.contains(l)).toList().size();
         int score = total + (freedom * 2);
         if (closest == 1) return score - 1000;
@@ -37,6 +63,129 @@ public class Score {
         return score;
     }
 
+    // Same evaluation as above, read straight from the search state's arrays. If the state tracks
+    // these distances the terms kept by make and unmake are read instead of worked out again
+    public int score(SearchState state, TransportDistances distances) {
+        return score(state, distances, new Terms());
+    }
+
+    // As above, keeping the parts in terms for scoreAfter. Wins leave terms as they were
+    public int score(SearchState state, TransportDistances distances, Terms terms) {
+        int winner = state.winner();
+        if (winner == SearchState.DETECTIVES_WIN) return -WIN;
+        else if (winner == SearchState.MRX_WINS) return WIN;
+        boolean tracked = state.tracked() == distances;
+        int MrXLocation = terms.MrXLocation = state.mrXLocation();
+        int total = 0;
+        int closest = Integer.MAX_VALUE;
+        int secondClosest = Integer.MAX_VALUE;
+        int closestPlayer = -1;
+        if (terms.detectiveDistances.length < state.players()) terms.detectiveDistances = new int[state.players()];
+        for (int p = 1; p < state.players(); p++) {
+            int distance = tracked ? state.detectiveDistance(p)
+                    : reachable(distances.distance(state.transportMask(p), state.location(p), MrXLocation));
+            terms.detectiveDistances[p] = distance;
+            total += distance;
+            if (distance < closest) {
+                secondClosest = closest;
+                closest = distance;
+                closestPlayer = p;
+            } else secondClosest = Integer.min(secondClosest, distance);
+        }
+        int lastMrX = state.lastRevealedLocation();
+        if (lastMrX != 0) total += distances.forMask(CompactGraph.ALL_TRANSPORTS).distance(MrXLocation, lastMrX);
+        int freedom;
+        if (tracked) freedom = state.freeNeighbours();
+        else {
+            CompactGraph graph = state.graph();
+            freedom = 0;
+            for (int edge = graph.edgesStart(MrXLocation); edge < graph.edgesEnd(MrXLocation); edge++) {
+                if (!state.isOccupied(graph.target(edge))) freedom++;
+            }
+        }
+        int belief = state.tracksBelief() ? belief(state, distances, terms) : 0;
+        terms.total = total;
+        terms.freedom = freedom;
+        terms.closest = closest;
+        terms.secondClosest = secondClosest;
+        terms.closestPlayer = closestPlayer;
+        terms.belief = belief;
+        return combine(total, freedom, closest) + belief;
+    }
+
+    // Rewards Mr X for what the detectives don't know when the state tracks their belief: how many
+    // nodes he could be on, how many of those no detective can reach in one move, and how far each
+    // detective is from the nearest of them. Past MAX_CANDIDATES nodes every term is at its most
+    int belief(SearchState state, TransportDistances distances, Terms terms) {
+        long[] possible = state.belief();
+        long[] occupied = state.occupied();
+        int size = 0;
+        for (int w = 0; w < possible.length; w++) size += Long.bitCount(possible[w] & ~occupied[w]);
+        int players = state.players();
+        if (size > MAX_CANDIDATES) return 2 * MAX_CANDIDATES + (players - 1) * MAX_DISTANCE;
+        if (terms.tables.length < players) {
+            terms.tables = new DistanceTable[players];
+            terms.nearest = new int[players];
+        }
+        DistanceTable[] tables = terms.tables;
+        int[] nearest = terms.nearest;
+        for (int p = 1; p < players; p++) {
+            tables[p] = distances.forMask(state.transportMask(p));
+            nearest[p] = MAX_DISTANCE;
+        }
+        int safe = 0;
+        for (int w = 0; w < possible.length; w++) {
+            for (long bits = possible[w] & ~occupied[w]; bits != 0; bits &= bits - 1) {
+                int node = w * 64 + Long.numberOfTrailingZeros(bits);
+                int closest = MAX_DISTANCE;
+                for (int p = 1; p < players; p++) {
+                    int distance = tables[p].distance(state.location(p), node);
+                    nearest[p] = Integer.min(nearest[p], distance);
+                    closest = Integer.min(closest, distance);
+                }
+                if (closest > 1) safe++;
+            }
+        }
+        int total = 0;
+        for (int p = 1; p < players; p++) total += nearest[p];
+        return size + safe + total;
+    }
+
+    // Score after a detective's single move from state, worked out from the parts score kept in
+    // parent for state without making the move. Capturing Mr X scores -WIN, other wins the move may
+    // cause, and a capture that Mr X still wins, are left to the search.
+    // Belief terms are taken as they were in that position.
+    public int scoreAfter(SearchState state, TransportDistances distances, Terms parent, int move) {
+        int p = SearchState.player(move);
+        int destination = SearchState.destination1(move);
+        int MrXLocation = parent.MrXLocation;
+        if (destination == MrXLocation) return -WIN;
+        int mask = state.transportMask(p, SearchState.ticket1(move));
+        int distance = reachable(distances.distance(mask, destination, MrXLocation));
+        int closestAfter = Integer.min(p == parent.closestPlayer ? parent.secondClosest : parent.closest, distance);
+        CompactGraph graph = state.graph();
+        int freedomAfter = parent.freedom;
+        for (int edge = graph.edgesStart(MrXLocation); edge < graph.edgesEnd(MrXLocation); edge++) {
+            int target = graph.target(edge);
+            if (target == state.location(p)) freedomAfter++;
+            else if (target == destination) freedomAfter--;
+        }
+        int total = parent.total - parent.detectiveDistances[p] + distance;
+        return combine(total, freedomAfter, closestAfter) + parent.belief;
+    }
+
+    // A detective out of tickets, or cut off, is no further than MAX_DISTANCE rather than UNREACHABLE,
+    // which would add over a hundred to Mr X's score wherever he is
+    static int reachable(int distance) {
+        return distance == DistanceTable.UNREACHABLE ? MAX_DISTANCE : distance;
+    }
+
+    private static int combine(int total, int freedom, int closest) {
+        int score = total + (freedom * 2);
+        if (closest == 1) return score - 1000;
+        return score;
+    }
+
     Integer getMrXLocation(Board.GameState state){
         // Traverses backwards through travel log to find location at last reveal
         Integer round = state.getMrXTravelLog().size();
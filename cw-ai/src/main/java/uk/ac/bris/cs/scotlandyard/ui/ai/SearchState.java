@@ -0,0 +1,759 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import uk.ac.bris.cs.scotlandyard.model.*;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Mutable, array-backed game state for search.
+ * Players are indexed with Mr X at 0 and the detectives after him. Each player has a location and
+ * a {@code long} of packed ticket counts, detective locations are also kept as a bitset over the
+ * nodes and the detectives still to move this round as a bitmask. Moves are encoded as
+ * {@code int}s (see {@link #player(int)} and friends), and {@link #make(int)} / {@link #unmake()}
+ * update the state in place through a preallocated undo stack, so searching allocates nothing.
+ * Converts to and from {@link Board.GameState} with {@link #from(Board)} and {@link #toGameState()}.
+ * Once {@link #track(TransportDistances)} is called, the terms {@link Score} needs are kept up to date
+ * the same way: each detective's distance to Mr X and their sum, and Mr X's unoccupied neighbours.
+ * Likewise after {@link #trackBelief(long[])}, the nodes the detectives think Mr X could be on, which
+ * the hash then covers too since the score depends on them.
+ */
+public final class SearchState {
+
+    // Winner values
+    public static final int NONE = 0;
+    public static final int MRX_WINS = 1;
+    public static final int DETECTIVES_WIN = 2;
+
+    // Move encoding: player, first ticket and destination, second ticket and destination, double flag
+    private static final int PLAYER_BITS = 3, TICKET_BITS = 3, NODE_BITS = 9;
+    private static final int TICKET1_SHIFT = PLAYER_BITS;
+    private static final int DESTINATION1_SHIFT = TICKET1_SHIFT + TICKET_BITS;
+    private static final int TICKET2_SHIFT = DESTINATION1_SHIFT + NODE_BITS;
+    private static final int DESTINATION2_SHIFT = TICKET2_SHIFT + TICKET_BITS;
+    private static final int DOUBLE_FLAG = 1 << (DESTINATION2_SHIFT + NODE_BITS);
+
+    // Ticket counts are packed 12 bits each into one long per player
+    private static final int COUNT_BITS = 12;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private static final Ticket[] TICKETS = Ticket.values();
+    private static final int TAXI = Ticket.TAXI.ordinal();
+    private static final int BUS = Ticket.BUS.ordinal();
+    private static final int UNDERGROUND = Ticket.UNDERGROUND.ordinal();
+    private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+    private static final int SECRET = Ticket.SECRET.ordinal();
+    // Ticket needed for each transport bit
+    private static final int[] REQUIRED_TICKET = Arrays.stream(Transport.values())
+            .mapToInt(t -> t.requiredTicket().ordinal()).toArray();
+
+    private final GameSetup setup;
+    private final CompactGraph graph;
+    private final Piece[] pieces;
+    private final int[] locations;
+    private final long[] tickets;
+    private final long[] occupied;
+    private final boolean[] reveal;
+    private final int[] logTickets;
+    private final int[] logLocations;
+    // lastReveals[i] is Mr X's last revealed location after i log entries, 0 before the first
+    private final int[] lastReveals;
+    private final int detectivesMask;
+    private int logSize;
+    private int remaining;
+    // Zobrist hash of locations, tickets, remaining players, log size, last reveal, belief if tracked
+    // and the node a chain of detectives has to fill, see vacatedKey
+    private long hash;
+    // Evaluation terms, null until track is called
+    private TransportDistances tracked;
+    private final int[] detectiveDistances;
+    private int distanceSum;
+    private int freeNeighbours;
+    // beliefs[i] is where Mr X could be after i log entries as far as the detectives know, null until
+    // trackBelief is called, and beliefKeys[i] its Zobrist key
+    private long[][] beliefs;
+    private long[] beliefKeys;
+
+    // Undo stack, three ints per ply: move, previous location of the mover, previous remaining
+    private int[] undo = new int[64 * 3];
+    private int undoSize;
+    // Hash before each ply
+    private long[] hashes = new long[64];
+    private final MoveBuffer buffer = new MoveBuffer();
+
+    private SearchState(GameSetup setup, CompactGraph graph, Piece[] pieces) {
+        if (graph.size() > 1 << NODE_BITS) throw new IllegalArgumentException("graph too large");
+        if (pieces.length > 1 << PLAYER_BITS) throw new IllegalArgumentException("too many players");
+        this.setup = setup;
+        this.graph = graph;
+        this.pieces = pieces;
+        this.locations = new int[pieces.length];
+        this.tickets = new long[pieces.length];
+        this.occupied = new long[(graph.size() + 63) / 64];
+        this.reveal = new boolean[setup.moves.size()];
+        for (int i = 0; i < reveal.length; i++) reveal[i] = setup.moves.get(i);
+        this.logTickets = new int[reveal.length];
+        this.logLocations = new int[reveal.length];
+        this.lastReveals = new int[reveal.length + 1];
+        this.detectiveDistances = new int[pieces.length];
+        this.detectivesMask = ((1 << pieces.length) - 1) & ~1;
+    }
+
+    // Converts a board where it is Mr X's turn, Mr X's location is the source of his moves
+    public static SearchState from(Board board) {
+        return from(board, board.getAvailableMoves().stream()
+                .filter(m -> m.commencedBy().isMrX())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("not Mr X's turn"))
+                .source());
+    }
+
+    // Converts any board given where Mr X is
+    public static SearchState from(Board board, int mrXLocation) {
+        List<Piece> pieces = new ArrayList<>();
+        pieces.add(Piece.MrX.MRX);
+        for (Piece.Detective d : Piece.Detective.values()) {
+            if (board.getPlayers().contains(d)) pieces.add(d);
+        }
+        SearchState state = new SearchState(board.getSetup(), CompactGraph.of(board.getSetup().graph),
+                pieces.toArray(new Piece[0]));
+        for (int p = 0; p < pieces.size(); p++) {
+            Piece piece = pieces.get(p);
+            Board.TicketBoard ticketBoard = board.getPlayerTickets(piece).orElseThrow();
+            for (Ticket t : TICKETS) state.tickets[p] |= (long) ticketBoard.getCount(t) << (t.ordinal() * COUNT_BITS);
+            if (piece.isMrX()) state.locations[p] = mrXLocation;
+            else state.locations[p] = board.getDetectiveLocation((Piece.Detective) piece).orElseThrow();
+            if (piece.isDetective()) state.setOccupied(state.locations[p]);
+        }
+        for (LogEntry entry : board.getMrXTravelLog()) {
+            state.logTickets[state.logSize] = entry.ticket().ordinal();
+            state.logLocations[state.logSize] = entry.location().orElse(0);
+            state.lastReveals[state.logSize + 1] = entry.location().orElse(state.lastReveals[state.logSize]);
+            state.logSize++;
+        }
+        for (Move move : board.getAvailableMoves()) state.remaining |= 1 << pieces.indexOf(move.commencedBy());
+        if (state.remaining == 0) state.remaining = 1;
+        state.hash = state.computeHash();
+        return state;
+    }
+
+    // Converts back to an immutable game state
+    public Board.GameState toGameState() {
+        ImmutableSet.Builder<Piece> remainingPieces = ImmutableSet.builder();
+        List<Player> detectives = new ArrayList<>();
+        for (int p = 0; p < pieces.length; p++) {
+            if ((remaining & 1 << p) != 0) remainingPieces.add(pieces[p]);
+            if (p != 0) detectives.add(toPlayer(p));
+        }
+        ImmutableList.Builder<LogEntry> log = ImmutableList.builder();
+        for (int i = 0; i < logSize; i++) {
+            if (reveal[i]) log.add(LogEntry.reveal(TICKETS[logTickets[i]], logLocations[i]));
+            else log.add(LogEntry.hidden(TICKETS[logTickets[i]]));
+        }
+        return new MyGameState(setup, remainingPieces.build(), log.build(), toPlayer(0), detectives);
+    }
+
+    // Returns an independent copy, including the moves made so far, e.g. for another search thread
+    public SearchState copy() {
+        SearchState copy = new SearchState(setup, graph, pieces);
+        System.arraycopy(locations, 0, copy.locations, 0, locations.length);
+        System.arraycopy(tickets, 0, copy.tickets, 0, tickets.length);
+        System.arraycopy(occupied, 0, copy.occupied, 0, occupied.length);
+        System.arraycopy(logTickets, 0, copy.logTickets, 0, logSize);
+        System.arraycopy(logLocations, 0, copy.logLocations, 0, logSize);
+        System.arraycopy(lastReveals, 0, copy.lastReveals, 0, logSize + 1);
+        System.arraycopy(detectiveDistances, 0, copy.detectiveDistances, 0, detectiveDistances.length);
+        copy.tracked = tracked;
+        copy.distanceSum = distanceSum;
+        copy.freeNeighbours = freeNeighbours;
+        if (beliefs != null) {
+            copy.beliefs = new long[beliefs.length][];
+            for (int i = 0; i < beliefs.length; i++) copy.beliefs[i] = beliefs[i].clone();
+            copy.beliefKeys = beliefKeys.clone();
+        }
+        copy.logSize = logSize;
+        copy.remaining = remaining;
+        copy.hash = hash;
+        copy.undo = undo.clone();
+        copy.undoSize = undoSize;
+        copy.hashes = hashes.clone();
+        return copy;
+    }
+
+    // Returns player p as an immutable Player
+    public Player toPlayer(int p) {
+        ImmutableMap.Builder<Ticket, Integer> map = ImmutableMap.builder();
+        for (Ticket t : TICKETS) map.put(t, tickets(p, t.ordinal()));
+        return new Player(pieces[p], map.build(), locations[p]);
+    }
+
+    public GameSetup setup() { return setup; }
+
+    public CompactGraph graph() { return graph; }
+
+    // Returns number of players including Mr X
+    public int players() { return pieces.length; }
+
+    public Piece piece(int p) { return pieces[p]; }
+
+    public int location(int p) { return locations[p]; }
+
+    public int mrXLocation() { return locations[0]; }
+
+    // Returns count of ticket (by ordinal) held by player p
+    public int tickets(int p, int ticket) {
+        return (int) (tickets[p] >>> (ticket * COUNT_BITS) & COUNT_MASK);
+    }
+
+    // Returns packed ticket counts of player p
+    public long packedTickets(int p) { return tickets[p]; }
+
+    // Returns the transport mask player p holds tickets for, see TransportDistances.mask
+    public int transportMask(int p) {
+        return transportMask(p, -1);
+    }
+
+    // Returns the transport mask player p would hold after using one ticket (by ordinal, -1 for none)
+    public int transportMask(int p, int spent) {
+        if (p == 0 && tickets(0, SECRET) - (spent == SECRET ? 1 : 0) > 0) return CompactGraph.ALL_TRANSPORTS;
+        int mask = 0;
+        for (int t = 0; t < REQUIRED_TICKET.length; t++) {
+            int ticket = REQUIRED_TICKET[t];
+            if (tickets(p, ticket) - (ticket == spent ? 1 : 0) > 0) mask |= 1 << t;
+        }
+        return mask;
+    }
+
+    // Returns the Zobrist hash, equal for states reached through different move orders
+    public long hash() { return hash; }
+
+    // Hashes the state from scratch, see Zobrist
+    long computeHash() {
+        long h = Zobrist.remaining(remaining) ^ Zobrist.logSize(logSize) ^ Zobrist.revealed(lastRevealedLocation());
+        for (int p = 0; p < pieces.length; p++) {
+            h ^= Zobrist.location(p, locations[p]);
+            for (int t = 0; t < TICKETS.length; t++) h ^= Zobrist.tickets(p, t, tickets(p, t));
+        }
+        if (beliefs != null) h ^= Zobrist.belief(beliefs[logSize]);
+        return h ^ vacatedKey();
+    }
+
+    // Returns bitmask of players still to move, bit 0 is Mr X
+    public int remaining() { return remaining; }
+
+    public boolean isMrXTurn() { return remaining == 1; }
+
+    // Returns the remaining mask at the start of the detectives' part of a round
+    public int detectivesMask() { return detectivesMask; }
+
+    public int logSize() { return logSize; }
+
+    // True if the next Mr X move is a reveal
+    public boolean isRevealNext() {
+        return logSize < reveal.length && reveal[logSize];
+    }
+
+    // Returns Mr X's location at his last reveal, or 0 if not yet revealed
+    public int lastRevealedLocation() { return lastReveals[logSize]; }
+
+    public boolean isOccupied(int node) {
+        return (occupied[node >>> 6] & 1L << node) != 0;
+    }
+
+    // Returns the detective occupancy bitset, must not be modified
+    long[] occupied() { return occupied; }
+
+    private void setOccupied(int node) { occupied[node >>> 6] |= 1L << node; }
+
+    /* Evaluation terms */
+
+    // Keeps the evaluation terms by the given distances from now on, through make and unmake
+    public void track(TransportDistances distances) {
+        if (tracked == distances) return;
+        tracked = distances;
+        for (int p = 1; p < pieces.length; p++) updateDistance(p);
+        countFreeNeighbours();
+    }
+
+    // Returns the distances the evaluation terms are kept by, or null if they aren't
+    public TransportDistances tracked() { return tracked; }
+
+    // Returns detective p's distance to Mr X with the transports it has tickets for, see
+    // Score.reachable, once tracked
+    public int detectiveDistance(int p) { return detectiveDistances[p]; }
+
+    // Returns the sum of detectiveDistance over the detectives, once tracked
+    public int distanceSum() { return distanceSum; }
+
+    // Returns the number of edges from Mr X's location to a node no detective is on, once tracked
+    public int freeNeighbours() { return freeNeighbours; }
+
+    private void updateDistance(int p) {
+        int distance = Score.reachable(tracked.distance(transportMask(p), locations[p], locations[0]));
+        distanceSum += distance - detectiveDistances[p];
+        detectiveDistances[p] = distance;
+    }
+
+    private void countFreeNeighbours() {
+        int source = locations[0];
+        freeNeighbours = 0;
+        for (int edge = graph.edgesStart(source); edge < graph.edgesEnd(source); edge++) {
+            if (!isOccupied(graph.target(edge))) freeNeighbours++;
+        }
+    }
+
+    // Keeps the belief from now on, starting from the given bitset of nodes Mr X could be on after
+    // the log entries so far, e.g. from MrXBelief
+    public void trackBelief(long[] possible) {
+        if (beliefs == null) {
+            beliefs = new long[reveal.length + 1][graph.words()];
+            beliefKeys = new long[reveal.length + 1];
+        }
+        System.arraycopy(possible, 0, beliefs[logSize], 0, graph.words());
+        hash ^= beliefKeys[logSize];
+        beliefKeys[logSize] = Zobrist.belief(beliefs[logSize]);
+        hash ^= beliefKeys[logSize];
+    }
+
+    public boolean tracksBelief() { return beliefs != null; }
+
+    // Returns the bitset of nodes Mr X could be on as far as the detectives know, must not be modified.
+    // Nodes detectives moved onto since Mr X last moved are still set, see occupied()
+    long[] belief() { return beliefs[logSize]; }
+
+    // Works out the belief after the next log entry: Mr X's location if it is a reveal, and otherwise
+    // every node ticket reaches from a node he could be on that no detective is on
+    private void believe(int ticket, int location) {
+        long[] next = beliefs[logSize + 1];
+        Arrays.fill(next, 0);
+        if (reveal[logSize]) next[location >>> 6] |= 1L << location;
+        else {
+            long[] current = beliefs[logSize];
+            for (int w = 0; w < next.length; w++) {
+                for (long bits = current[w] & ~occupied[w]; bits != 0; bits &= bits - 1) {
+                    long[] targets = graph.reach(ticket, w * 64 + Long.numberOfTrailingZeros(bits));
+                    for (int i = 0; i < next.length; i++) next[i] |= targets[i];
+                }
+            }
+        }
+        beliefKeys[logSize + 1] = Zobrist.belief(next);
+        hash ^= beliefKeys[logSize] ^ beliefKeys[logSize + 1];
+    }
+
+    // Updates the terms after Mr X moved, all of them depend on where he is
+    private void trackMrX() {
+        if (tracked == null) return;
+        for (int p = 1; p < pieces.length; p++) updateDistance(p);
+        countFreeNeighbours();
+    }
+
+    // Updates the terms after detective p moved from one node to another
+    private void trackDetective(int p, int from, int to) {
+        if (tracked == null) return;
+        updateDistance(p);
+        int source = locations[0];
+        for (int edge = graph.edgesStart(source); edge < graph.edgesEnd(source); edge++) {
+            int target = graph.target(edge);
+            if (target == from) freeNeighbours++;
+            else if (target == to) freeNeighbours--;
+        }
+    }
+
+    private void clearOccupied(int node) { occupied[node >>> 6] &= ~(1L << node); }
+
+    /* Move encoding */
+
+    public static int player(int move) { return move & (1 << PLAYER_BITS) - 1; }
+
+    public static int ticket1(int move) { return move >>> TICKET1_SHIFT & (1 << TICKET_BITS) - 1; }
+
+    public static int destination1(int move) { return move >>> DESTINATION1_SHIFT & (1 << NODE_BITS) - 1; }
+
+    public static int ticket2(int move) { return move >>> TICKET2_SHIFT & (1 << TICKET_BITS) - 1; }
+
+    public static int destination2(int move) { return move >>> DESTINATION2_SHIFT & (1 << NODE_BITS) - 1; }
+
+    public static boolean isDouble(int move) { return (move & DOUBLE_FLAG) != 0; }
+
+    // Returns where the mover ends up
+    public static int destination(int move) { return isDouble(move) ? destination2(move) : destination1(move); }
+
+    static int singleMove(int player, int ticket, int destination) {
+        return player | ticket << TICKET1_SHIFT | destination << DESTINATION1_SHIFT;
+    }
+
+    static int doubleMove(int ticket1, int destination1, int ticket2, int destination2) {
+        return singleMove(0, ticket1, destination1) | ticket2 << TICKET2_SHIFT
+                | destination2 << DESTINATION2_SHIFT | DOUBLE_FLAG;
+    }
+
+    // Converts an encoded move made from this state to a Move
+    public Move toMove(int move) {
+        int p = player(move);
+        if (isDouble(move)) {
+            return new Move.DoubleMove(pieces[p], locations[p], TICKETS[ticket1(move)], destination1(move),
+                    TICKETS[ticket2(move)], destination2(move));
+        }
+        return new Move.SingleMove(pieces[p], locations[p], TICKETS[ticket1(move)], destination1(move));
+    }
+
+    // Encodes a Move to be made from this state
+    public int encode(Move move) {
+        int p = Arrays.asList(pieces).indexOf(move.commencedBy());
+        return move.accept(new Move.Visitor<Integer>() {
+            @Override public Integer visit(Move.SingleMove m) {
+                return singleMove(p, m.ticket.ordinal(), m.destination);
+            }
+            @Override public Integer visit(Move.DoubleMove m) {
+                return doubleMove(m.ticket1.ordinal(), m.destination1, m.ticket2.ordinal(), m.destination2);
+            }
+        });
+    }
+
+    /* Move generation */
+
+    // Returns an upper bound on the number of moves availableMoves can write
+    public int maxMoves() {
+        int singles = maxSingleMoves();
+        return Integer.max(singles + singles * singles, singles * (pieces.length - 1));
+    }
+
+    // Returns an upper bound on the number of single moves of one player
+    public int maxSingleMoves() {
+        int most = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            int moves = 0;
+            for (int edge = graph.edgesStart(node); edge < graph.edgesEnd(node); edge++) {
+                // One move per ticket of the edge's transports, and secret
+                int tickets = 1 << SECRET;
+                for (int t = 0; t < REQUIRED_TICKET.length; t++) {
+                    if ((graph.transports(edge) & 1 << t) != 0) tickets |= 1 << REQUIRED_TICKET[t];
+                }
+                moves += Integer.bitCount(tickets);
+            }
+            most = Integer.max(most, moves);
+        }
+        return most;
+    }
+
+    // Writes the moves of every remaining player into out, returns the count.
+    // Order is deterministic: by player, then by neighbour, then by ticket.
+    public int availableMoves(int[] out) {
+        buffer.moves = out;
+        buffer.count = 0;
+        forEachMove(buffer);
+        buffer.moves = null;
+        return buffer.count;
+    }
+
+    // Streams the moves of every remaining player to action in availableMoves order, stopping
+    // as soon as action returns false. Returns true if every move was visited.
+    public boolean forEachMove(IntPredicate action) {
+        if (winner() != NONE) return true;
+        for (int p = 0; p < pieces.length; p++) {
+            if ((remaining & 1 << p) == 0) continue;
+            if (!singleMoves(p, action)) return false;
+            if (p == 0 && !doubleMoves(action)) return false;
+        }
+        return true;
+    }
+
+    // Reused by availableMoves so filling an array allocates nothing
+    private static final class MoveBuffer implements IntPredicate {
+        int[] moves;
+        int count;
+
+        @Override
+        public boolean test(int move) {
+            moves[count++] = move;
+            return true;
+        }
+    }
+
+    // Returns bitmask of tickets player p can use along an edge, with spent already used
+    private int edgeTickets(int p, int edge, int spent) {
+        int transports = graph.transports(edge);
+        int usable = 0;
+        for (int t = 0; t < REQUIRED_TICKET.length; t++) {
+            if ((transports & 1 << t) == 0) continue;
+            int ticket = REQUIRED_TICKET[t];
+            if (tickets(p, ticket) > (ticket == spent ? 1 : 0)) usable |= 1 << ticket;
+        }
+        if (p == 0 && tickets(0, SECRET) > (spent == SECRET ? 1 : 0)) usable |= 1 << SECRET;
+        return usable;
+    }
+
+    private boolean singleMoves(int p, IntPredicate action) {
+        int source = locations[p];
+        for (int edge = graph.edgesStart(source); edge < graph.edgesEnd(source); edge++) {
+            int destination = graph.target(edge);
+            if (isOccupied(destination)) continue;
+            int usable = edgeTickets(p, edge, -1);
+            for (int ticket = 0; usable != 0; ticket++, usable >>>= 1) {
+                if ((usable & 1) != 0 && !action.test(singleMove(p, ticket, destination))) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean doubleMoves(IntPredicate action) {
+        if (tickets(0, DOUBLE) == 0 || logSize >= reveal.length - 1) return true;
+        int source = locations[0];
+        for (int edge1 = graph.edgesStart(source); edge1 < graph.edgesEnd(source); edge1++) {
+            int destination1 = graph.target(edge1);
+            if (isOccupied(destination1)) continue;
+            int usable1 = edgeTickets(0, edge1, -1);
+            for (int ticket1 = 0; usable1 != 0; ticket1++, usable1 >>>= 1) {
+                if ((usable1 & 1) == 0) continue;
+                for (int edge2 = graph.edgesStart(destination1); edge2 < graph.edgesEnd(destination1); edge2++) {
+                    int destination2 = graph.target(edge2);
+                    if (isOccupied(destination2)) continue;
+                    int usable2 = edgeTickets(0, edge2, ticket1);
+                    for (int ticket2 = 0; usable2 != 0; ticket2++, usable2 >>>= 1) {
+                        if ((usable2 & 1) != 0
+                                && !action.test(doubleMove(ticket1, destination1, ticket2, destination2))) return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Writes player p's single moves into out as if no detective were on the board, returns the count.
+    // Those to unoccupied nodes are p's moves for as long as p's tickets and location don't change.
+    public int movesIgnoringDetectives(int p, int[] out) {
+        int count = 0;
+        int source = locations[p];
+        for (int edge = graph.edgesStart(source); edge < graph.edgesEnd(source); edge++) {
+            int usable = edgeTickets(p, edge, -1);
+            for (int ticket = 0; usable != 0; ticket++, usable >>>= 1) {
+                if ((usable & 1) != 0) out[count++] = singleMove(p, ticket, graph.target(edge));
+            }
+        }
+        return count;
+    }
+
+    // Writes the detectives' next moves into out, from each remaining detective p's moves ignoring
+    // detectives in lists[p][0, counts[p]), see movesIgnoringDetectives. Returns the count.
+    // Every set of destinations the detectives can all move to in a round is reached by one order of
+    // moves. The lowest detective that can move goes first, unless its destination is the node of a
+    // detective still to move. Then that detective moves first, or the one whose node it moves onto
+    // and so on, and the rest of the chain follows, each onto the node just left. Detectives that
+    // can't move, even at the end of such a chain, are passed over.
+    public int detectiveMoves(int[][] lists, int[] counts, int[] out) {
+        int mover = undoSize == 0 ? 0 : player(undo[undoSize - 3]);
+        for (int p = 1; p < pieces.length; p++) {
+            if ((remaining & 1 << p) == 0) continue;
+            int chain = chain(p, lists, counts);
+            int count = 0;
+            // A detective above p moving first left a node for the rest of p's chain to fill
+            if (p < mover) count = chainMoves(chain, lists, counts, undo[undoSize - 2], out);
+            if (count == 0) count = chainMoves(chain, lists, counts, -1, out);
+            if (count > 0) return count;
+        }
+        return 0;
+    }
+
+    // Bitmask of p and the detectives still to move that p can reach by moving onto the node of one,
+    // who moves onto the node of another and so on
+    private int chain(int p, int[][] lists, int[] counts) {
+        int chain = 1 << p;
+        for (int next = chain; next != 0; ) {
+            int q = Integer.numberOfTrailingZeros(next);
+            next &= ~(1 << q);
+            for (int i = 0; i < counts[q]; i++) {
+                int destination = destination1(lists[q][i]);
+                if (!isOccupied(destination)) continue;
+                for (int r = 1; r < pieces.length; r++) {
+                    if ((remaining & ~chain & 1 << r) == 0 || locations[r] != destination) continue;
+                    chain |= 1 << r;
+                    next |= 1 << r;
+                }
+            }
+        }
+        return chain;
+    }
+
+    // Writes the moves of the detectives in chain onto target, or onto any free node if target is -1
+    private int chainMoves(int chain, int[][] lists, int[] counts, int target, int[] out) {
+        int count = 0;
+        for (int bits = chain; bits != 0; bits &= bits - 1) {
+            int q = Integer.numberOfTrailingZeros(bits);
+            for (int i = 0; i < counts[q]; i++) {
+                int destination = destination1(lists[q][i]);
+                if (target < 0 ? !isOccupied(destination) : destination == target) out[count++] = lists[q][i];
+            }
+        }
+        return count;
+    }
+
+    // True if move is one of availableMoves, e.g. for a move read back from a hash table
+    public boolean isLegal(int move) {
+        int p = player(move);
+        if (p >= pieces.length || (remaining & 1 << p) == 0 || winner() != NONE) return false;
+        if (!isDouble(move)) return canTake(p, locations[p], ticket1(move), destination1(move), -1);
+        return p == 0 && tickets(0, DOUBLE) > 0 && logSize < reveal.length - 1
+                && canTake(0, locations[0], ticket1(move), destination1(move), -1)
+                && canTake(0, destination1(move), ticket2(move), destination2(move), ticket1(move));
+    }
+
+    // True if player p can travel from source to an unoccupied destination with ticket, with spent already used
+    private boolean canTake(int p, int source, int ticket, int destination, int spent) {
+        if (isOccupied(destination)) return false;
+        for (int edge = graph.edgesStart(source); edge < graph.edgesEnd(source); edge++) {
+            if (graph.target(edge) == destination) return (edgeTickets(p, edge, spent) & 1 << ticket) != 0;
+        }
+        return false;
+    }
+
+    // True if player p has at least one single move
+    public boolean canMove(int p) {
+        int source = locations[p];
+        for (int edge = graph.edgesStart(source); edge < graph.edgesEnd(source); edge++) {
+            if (!isOccupied(graph.target(edge)) && edgeTickets(p, edge, -1) != 0) return true;
+        }
+        return false;
+    }
+
+    // True if any player in mask can move
+    private boolean anyCanMove(int mask) {
+        for (int p = 0; p < pieces.length; p++) {
+            if ((mask & 1 << p) != 0 && canMove(p)) return true;
+        }
+        return false;
+    }
+
+    // Returns NONE, MRX_WINS or DETECTIVES_WIN. As in the model, Mr X's wins take precedence, so a
+    // detective landing on him with the last move any detective had left loses
+    public int winner() {
+        if (!anyCanMove(detectivesMask)) return MRX_WINS;
+        if (remaining == 1 && logSize == reveal.length) return MRX_WINS;
+        for (int p = 1; p < pieces.length; p++) if (locations[p] == locations[0]) return DETECTIVES_WIN;
+        if (remaining == 1 && !canMove(0)) return DETECTIVES_WIN;
+        return NONE;
+    }
+
+    /* Make and unmake */
+
+    // Applies an encoded move from availableMoves in place
+    public void make(int move) {
+        int p = player(move);
+        if (undoSize == undo.length) {
+            undo = Arrays.copyOf(undo, undo.length * 2);
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+        }
+        hashes[undoSize / 3] = hash;
+        hash ^= vacatedKey();
+        undo[undoSize++] = move;
+        undo[undoSize++] = locations[p];
+        undo[undoSize++] = remaining;
+        if (p == 0) {
+            useTicket(0, ticket1(move));
+            log(ticket1(move), destination1(move));
+            if (isDouble(move)) {
+                useTicket(0, ticket2(move));
+                useTicket(0, DOUBLE);
+                log(ticket2(move), destination2(move));
+            }
+            moveTo(0, destination(move));
+            setRemaining(detectivesMask);
+            trackMrX();
+        } else {
+            int source = locations[p];
+            clearOccupied(source);
+            setOccupied(destination1(move));
+            moveTo(p, destination1(move));
+            useTicket(p, ticket1(move));
+            giveTicket(0, ticket1(move));
+            trackDetective(p, source, destination1(move));
+            setRemaining(remaining & ~(1 << p));
+            // Pass the turn to Mr X once no remaining detective can move
+            if (!anyCanMove(remaining)) setRemaining(1);
+        }
+        hash ^= vacatedKey();
+    }
+
+    // Key of the node the last move left if a detective below its mover is still to move, as then
+    // detectiveMoves may have to fill it. Zero otherwise, e.g. once the round is over
+    private long vacatedKey() {
+        if (undoSize == 0) return 0;
+        int p = player(undo[undoSize - 3]);
+        if ((remaining & detectivesMask & (1 << p) - 1) == 0) return 0;
+        return Zobrist.vacated(undo[undoSize - 2]);
+    }
+
+    // Reverts the last move made
+    public void unmake() {
+        if (undoSize == 0) throw new IllegalStateException("no move to unmake");
+        int previousRemaining = undo[--undoSize];
+        int previousLocation = undo[--undoSize];
+        int move = undo[--undoSize];
+        int p = player(move);
+        if (p == 0) {
+            giveTicket(0, ticket1(move));
+            logSize--;
+            if (isDouble(move)) {
+                giveTicket(0, ticket2(move));
+                giveTicket(0, DOUBLE);
+                logSize--;
+            }
+        } else {
+            clearOccupied(locations[p]);
+            setOccupied(previousLocation);
+            giveTicket(p, ticket1(move));
+            useTicket(0, ticket1(move));
+        }
+        int location = locations[p];
+        locations[p] = previousLocation;
+        remaining = previousRemaining;
+        hash = hashes[undoSize / 3];
+        if (p == 0) trackMrX();
+        else trackDetective(p, location, previousLocation);
+    }
+
+    // Returns number of moves made since conversion
+    public int ply() { return undoSize / 3; }
+
+    // Reverts moves until only ply moves have been made since conversion
+    public void unmakeTo(int ply) {
+        if (ply < 0 || ply > ply()) throw new IllegalArgumentException("ply " + ply + " not in [0, " + ply() + "]");
+        while (ply() > ply) unmake();
+    }
+
+    private void useTicket(int p, int ticket) {
+        int count = tickets(p, ticket);
+        hash ^= Zobrist.tickets(p, ticket, count) ^ Zobrist.tickets(p, ticket, count - 1);
+        tickets[p] -= 1L << (ticket * COUNT_BITS);
+    }
+
+    private void giveTicket(int p, int ticket) {
+        int count = tickets(p, ticket);
+        hash ^= Zobrist.tickets(p, ticket, count) ^ Zobrist.tickets(p, ticket, count + 1);
+        tickets[p] += 1L << (ticket * COUNT_BITS);
+    }
+
+    private void moveTo(int p, int node) {
+        hash ^= Zobrist.location(p, locations[p]) ^ Zobrist.location(p, node);
+        locations[p] = node;
+    }
+
+    private void setRemaining(int mask) {
+        hash ^= Zobrist.remaining(remaining ^ mask);
+        remaining = mask;
+    }
+
+    private void log(int ticket, int location) {
+        if (reveal[logSize]) hash ^= Zobrist.revealed(lastRevealedLocation()) ^ Zobrist.revealed(location);
+        hash ^= Zobrist.logSize(logSize) ^ Zobrist.logSize(logSize + 1);
+        if (beliefs != null) believe(ticket, location);
+        logTickets[logSize] = ticket;
+        logLocations[logSize] = reveal[logSize] ? location : 0;
+        lastReveals[logSize + 1] = reveal[logSize] ? location : lastReveals[logSize];
+        logSize++;
+    }
+}
@@ -0,0 +1,32 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+/**
+ * What one pickMove call did: how long it took, nodes searched, the depth completed (in half-rounds,
+ * see {@link Minimax}), alpha-beta cutoffs and transposition table hits. Counters an AI doesn't have
+ * are 0.
+ */
+public final class SearchStats {
+    public final long nanos;
+    public final long nodes;
+    public final int depth;
+    public final long cutoffs;
+    public final long tableHits;
+
+    public SearchStats(long nanos, long nodes, int depth, long cutoffs, long tableHits) {
+        this.nanos = nanos;
+        this.nodes = nodes;
+        this.depth = depth;
+        this.cutoffs = cutoffs;
+        this.tableHits = tableHits;
+    }
+
+    public long nodesPerSecond() {
+        return nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f ms, %d nodes (%d/s), depth %d, %d cutoffs, %d table hits",
+                nanos / 1e6, nodes, nodesPerSecond(), depth, cutoffs, tableHits);
+    }
+}
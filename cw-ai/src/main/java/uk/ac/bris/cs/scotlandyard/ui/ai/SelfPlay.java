@@ -0,0 +1,222 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * Plays AIs against each other without the UI, many games at once.
+ * Each game drives a {@link Model} from {@link MyModelFactory} the way the UI does: the AI for the
+ * side to move picks one move at a time from the current board, a move slower than the timeout
+ * loses the game for that side, and an invalid move is an error.
+ * Game {@code i} starts from the locations generated with seed {@code firstSeed + i}, and gets its
+ * own AI instances, each searching on one thread.
+ * Every move's time, and the search counters of {@link Instrumented} AIs, go into {@link #metrics()}
+ * under {@code mrX.} and {@code detectives.}.
+ * Run with {@code --games=1000 --threads=8 --mrX=TheRealSlimShady --detectives=TheFakeSlimShady
+ * --timeout=1000 --seed=0 --csv=metrics.csv --json=metrics.json}, any of which may be left out.
+ */
+public final class SelfPlay {
+
+    // AIs by name, built single-threaded since games already run in parallel
+    static final ImmutableMap<String, Supplier<Ai>> AIS = ImmutableMap.of(
+            "TheRealSlimShady", () -> new TheRealSlimShady(TheRealSlimShady.timeFraction(), 1),
+            "MonteCarloShady", () -> new MonteCarloShady(TheRealSlimShady.timeFraction(), 1),
+            "TheFakeSlimShady", TheFakeSlimShady::new);
+
+    static final int DETECTIVES = 5;
+
+    private final GameSetup setup;
+    private final Supplier<Ai> mrX;
+    private final Supplier<Ai> detectives;
+    private final long timeoutMillis;
+    private final Metrics metrics = new Metrics();
+
+    public SelfPlay(Supplier<Ai> mrX, Supplier<Ai> detectives, long timeoutMillis) {
+        if (timeoutMillis <= 0) throw new IllegalArgumentException("timeout must be positive");
+        try {
+            this.setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24MOVES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.mrX = mrX;
+        this.detectives = detectives;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * The outcome of one game, with how long every pickMove call took.
+     */
+    public static final class Game {
+        public final int seed;
+        public final boolean mrXWon;
+        // Set if the game ended because the losing side ran out of time
+        public final boolean timedOut;
+        // Rounds played, a double move uses two
+        public final int rounds;
+        public final long[] mrXNanos;
+        public final long[] detectiveNanos;
+
+        Game(int seed, boolean mrXWon, boolean timedOut, int rounds, long[] mrXNanos, long[] detectiveNanos) {
+            this.seed = seed;
+            this.mrXWon = mrXWon;
+            this.timedOut = timedOut;
+            this.rounds = rounds;
+            this.mrXNanos = mrXNanos;
+            this.detectiveNanos = detectiveNanos;
+        }
+    }
+
+    static Model start(GameSetup setup, int seed) {
+        Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(seed));
+        List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, DETECTIVES);
+        List<Player> detectives = new ArrayList<>();
+        for (int i = 0; i < DETECTIVES; i++) {
+            detectives.add(new Player(Piece.Detective.values()[i], ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+        }
+        return new MyModelFactory().build(setup, mrX, ImmutableList.copyOf(detectives));
+    }
+
+    // Plays one game to the end on the calling thread
+    public Game play(int seed) {
+        Model model = start(setup, seed);
+        Ai mrXAi = mrX.get();
+        Ai detectiveAi = detectives.get();
+        List<Long> mrXNanos = new ArrayList<>();
+        List<Long> detectiveNanos = new ArrayList<>();
+        Pair<Long, TimeUnit> timeout = new Pair<>(timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            mrXAi.onStart();
+            detectiveAi.onStart();
+            while (true) {
+                Board board = model.getCurrentBoard();
+                if (!board.getWinner().isEmpty()) {
+                    return game(seed, board.getWinner().contains(Piece.MrX.MRX), false, board, mrXNanos, detectiveNanos);
+                }
+                Set<Move> moves = board.getAvailableMoves();
+                boolean mrXTurn = moves.iterator().next().commencedBy().isMrX();
+                Ai ai = mrXTurn ? mrXAi : detectiveAi;
+                long start = System.nanoTime();
+                Move move = ai.pickMove(board, timeout);
+                long nanos = System.nanoTime() - start;
+                (mrXTurn ? mrXNanos : detectiveNanos).add(nanos);
+                record(mrXTurn ? "mrX" : "detectives", ai, nanos);
+                if (!moves.contains(move)) {
+                    throw new IllegalStateException("Ai(" + ai.name() + ") selected an invalid move, got: " + move + " in game " + seed);
+                }
+                // Too slow, the other side wins as it would in the UI
+                if (nanos > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                    return game(seed, !mrXTurn, true, board, mrXNanos, detectiveNanos);
+                }
+                model.chooseMove(move);
+            }
+        } finally {
+            mrXAi.onTerminate();
+            detectiveAi.onTerminate();
+        }
+    }
+
+    // Metrics of every move played so far
+    public Metrics metrics() { return metrics; }
+
+    private void record(String side, Ai ai, long nanos) {
+        SearchStats stats = ai instanceof Instrumented instrumented ? instrumented.lastSearch() : null;
+        if (stats != null) metrics.record(side, stats);
+        else metrics.record(side + ".nanos", nanos);
+    }
+
+    private static Game game(int seed, boolean mrXWon, boolean timedOut, Board board, List<Long> mrXNanos, List<Long> detectiveNanos) {
+        return new Game(seed, mrXWon, timedOut, board.getMrXTravelLog().size(),
+                mrXNanos.stream().mapToLong(Long::longValue).toArray(),
+                detectiveNanos.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    // Plays games with seeds firstSeed to firstSeed + games - 1 on a pool of threads, in seed order
+    public List<Game> playAll(int games, int firstSeed, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Game>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int seed = firstSeed + i;
+                futures.add(pool.submit(() -> play(seed)));
+            }
+            List<Game> results = new ArrayList<>(games);
+            for (Future<Game> future : futures) results.add(future.get());
+            return results;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Win rates, game lengths and pickMove latency percentiles of each side
+    public static String report(List<Game> games) {
+        StringBuilder report = new StringBuilder();
+        long mrXWins = games.stream().filter(g -> g.mrXWon).count();
+        long timeouts = games.stream().filter(g -> g.timedOut).count();
+        IntSummaryStatistics rounds = games.stream().mapToInt(g -> g.rounds).summaryStatistics();
+        report.append(String.format("games %d, Mr X wins %d (%.1f%%), detectives win %d (%.1f%%), timeouts %d%n",
+                games.size(), mrXWins, percent(mrXWins, games.size()),
+                games.size() - mrXWins, percent(games.size() - mrXWins, games.size()), timeouts));
+        report.append(String.format("rounds min %d, mean %.1f, max %d%n", rounds.getMin(), rounds.getAverage(), rounds.getMax()));
+        report.append(latency("Mr X", games.stream().flatMapToLong(g -> Arrays.stream(g.mrXNanos)).toArray()));
+        report.append(latency("detectives", games.stream().flatMapToLong(g -> Arrays.stream(g.detectiveNanos)).toArray()));
+        return report.toString();
+    }
+
+    private static double percent(long count, int total) {
+        return total == 0 ? 0 : 100.0 * count / total;
+    }
+
+    private static String latency(String side, long[] nanos) {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (long n : nanos) histogram.record(n);
+        return String.format("%s moves %d, ms p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n", side, nanos.length,
+                millis(histogram.percentile(50)), millis(histogram.percentile(90)),
+                millis(histogram.percentile(99)), millis(histogram.max()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Supplier<Ai> ai(String name) {
+        Supplier<Ai> ai = AIS.get(name);
+        if (ai == null) throw new IllegalArgumentException("unknown AI " + name + ", expected one of " + AIS.keySet());
+        return ai;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("expected --name=value, got " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int games = Integer.parseInt(options.getOrDefault("games", "100"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        long timeout = Long.parseLong(options.getOrDefault("timeout", "1000"));
+        int seed = Integer.parseInt(options.getOrDefault("seed", "0"));
+        SelfPlay selfPlay = new SelfPlay(ai(options.getOrDefault("mrX", "TheRealSlimShady")),
+                ai(options.getOrDefault("detectives", "TheFakeSlimShady")), timeout);
+        // Load the shared distance tables up front, so the first move of the first games isn't timed out
+        TransportDistances.standard();
+        long start = System.nanoTime();
+        List<Game> results = selfPlay.playAll(games, seed, threads);
+        System.out.print(report(results));
+        System.out.printf("took %.1f s%n", (System.nanoTime() - start) / 1e9);
+        if (options.containsKey("csv")) selfPlay.metrics().writeCsv(Path.of(options.get("csv")));
+        if (options.containsKey("json")) selfPlay.metrics().writeJson(Path.of(options.get("json")));
+    }
+}
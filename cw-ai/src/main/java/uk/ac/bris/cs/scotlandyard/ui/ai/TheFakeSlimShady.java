@@ -8,7 +8,11 @@ import com.google.common.collect.ImmutableList;
 import io.atlassian.fugue.Pair;
 import uk.ac.bris.cs.scotlandyard.model.*;
 
-public class TheFakeSlimShady implements Ai, Serializable {
+public class TheFakeSlimShady implements Ai, Instrumented, Serializable {
+
+    // Where MrX could be in the current game, built on first use
+    private transient MrXBelief belief;
+    private transient volatile SearchStats lastSearch;
 
     // returns name of Detective AI
     @Nonnull
@@ -19,47 +23,53 @@ public class TheFakeSlimShady implements Ai, Serializable {
 
     // returns the move selected by the AI
     public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
-        // Read list of all distances from file t.tmp
-        FileInputStream fis;
-        ObjectInputStream ois;
-        List<List<Integer>> distances;
-        try {
-            fis = new FileInputStream("cw-ai/src/main/java/uk/ac/bris/cs/scotlandyard/ui/ai/t.tmp");
-            ois = new ObjectInputStream(fis);
-            distances = (List<List<Integer>>) ois.readObject();
-            ois.close();
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException(e);
-        }
+        long start = System.nanoTime();
+        // Shared ticket-aware distance tables, built once per JVM
+        TransportDistances distances = TransportDistances.standard();
         Piece Moving = board.getAvailableMoves().asList().get(0).commencedBy();
-        return pickDetectiveMove((Board.GameState) board, Moving, distances);
+        Move move = pickDetectiveMove((Board.GameState) board, Moving, distances);
+        // Every move of the piece is scored once, there is no deeper search
+        long nodes = board.getAvailableMoves().stream().filter(m -> m.commencedBy() == Moving).count();
+        lastSearch = new SearchStats(System.nanoTime() - start, nodes, 1, 0, 0);
+        return move;
+    }
+
+    @Override
+    public SearchStats lastSearch() {
+        return lastSearch;
+    }
+
+    @Override
+    public void onTerminate() {
+        belief = null;
     }
 
     // algorithm to select detective move
-    public Move pickDetectiveMove(Board.GameState state, Piece piece, List<List<Integer>> distances) {
+    public Move pickDetectiveMove(Board.GameState state, Piece piece, TransportDistances distances) {
         // Filter moves for relevant piece
         List<Move> moves = state.getAvailableMoves().stream().filter(m -> m.commencedBy() == piece).toList();
-        // Find MrX location from previous reveal
-        Integer MrXLocation = new Score().getMrXLocation(state);
-        // Choose random moves before MrX first reveal
-        if (MrXLocation == null) {
-            Random rand = new Random();
-            return moves.get(rand.nextInt(moves.size()));
-        }
-        // Otherwise choose move closest to last reveal
-        else {
-            Move chosen = null;
-            Integer min = 99999;
-            for (Move m : moves) {
-                Board.GameState x = state.advance(m);
-                Integer detectiveLocation = x.getDetectiveLocation((Piece.Detective) piece).get();
-                Integer distance = distances.get(detectiveLocation - 1).get(MrXLocation);
-                if (distance < min) {
-                    min = distance;
-                    chosen = m;
-                }
+        // Narrow down where MrX could be from his travel log, a single node after a reveal
+        if (belief == null || !belief.isFor(state)) belief = MrXBelief.of(state);
+        belief.update(state);
+        int[] possible = belief.nodes();
+        // Choose move closest on average to where MrX could be
+        Move chosen = null;
+        long min = Long.MAX_VALUE;
+        Board.TicketBoard tickets = state.getPlayerTickets(piece).get();
+        for (Move m : moves) {
+            // Read the move directly instead of advancing a whole new state for it
+            Move.SingleMove single = (Move.SingleMove) m;
+            int detectiveLocation = single.destination;
+            // Distance using only transports the detective still has tickets for after the move
+            int mask = TransportDistances.mask(t -> tickets.getCount(t) - (t == single.ticket ? 1 : 0), false);
+            DistanceTable table = distances.forMask(mask);
+            long distance = 0;
+            for (int MrXLocation : possible) distance += table.distance(detectiveLocation, MrXLocation);
+            if (distance < min) {
+                min = distance;
+                chosen = m;
             }
-            return chosen;
         }
+        return chosen;
     }
 }
@@ -2,14 +2,56 @@ package uk.ac.bris.cs.scotlandyard.ui.ai;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import io.atlassian.fugue.Pair;
 import uk.ac.bris.cs.scotlandyard.model.*;
 
-public class TheRealSlimShady implements Ai, Serializable {
+public class TheRealSlimShady implements Ai, Instrumented, Serializable {
+
+	// Fraction of the move timeout spent searching, override with -Dscotlandyard.ai.timeFraction=<fraction>
+	static final String TIME_FRACTION_PROPERTY = "scotlandyard.ai.timeFraction";
+	static final double DEFAULT_TIME_FRACTION = 0.8;
+	// Transposition table entries, override with -Dscotlandyard.ai.tableEntries=<entries>
+	static final String TABLE_ENTRIES_PROPERTY = "scotlandyard.ai.tableEntries";
+	static final int DEFAULT_TABLE_ENTRIES = 1 << 20;
+	// Search threads, override with -Dscotlandyard.ai.threads=<threads>; 1 searches deterministically
+	static final String THREADS_PROPERTY = "scotlandyard.ai.threads";
+	// Nodes each search thread may visit per move, override with -Dscotlandyard.ai.nodeBudget=<nodes>; unlimited by default
+	static final String NODE_BUDGET_PROPERTY = "scotlandyard.ai.nodeBudget";
+	// Score what the detectives know of Mr X's location too, enable with -Dscotlandyard.ai.belief=true
+	static final String BELIEF_PROPERTY = "scotlandyard.ai.belief";
+
+	private final double timeFraction;
+	private final int threads;
+	// Kept between moves, built on first use
+	private transient TranspositionTable table;
+	private transient ForkJoinPool pool;
+	private transient volatile SearchStats lastSearch;
+	// The detectives' view of where Mr X could be, kept between moves when scoring it
+	private transient MrXBelief belief;
+
+	// Time fraction given by the property, or the default
+	static double timeFraction() {
+		return Double.parseDouble(System.getProperty(TIME_FRACTION_PROPERTY, String.valueOf(DEFAULT_TIME_FRACTION)));
+	}
+
+	public TheRealSlimShady() {
+		this(timeFraction(),
+				Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+	}
+
+	public TheRealSlimShady(double timeFraction) {
+		this(timeFraction, 1);
+	}
+
+	public TheRealSlimShady(double timeFraction, int threads) {
+		if (timeFraction <= 0 || timeFraction > 1) throw new IllegalArgumentException("time fraction must be in (0, 1]");
+		if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+		this.timeFraction = timeFraction;
+		this.threads = threads;
+	}
 
 	@Nonnull
 	@Override
@@ -20,68 +62,41 @@ public class TheRealSlimShady implements Ai, Serializable {
 	@Nonnull
 	@Override
 	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
-		// Initialise distances where 1st index is start location + 2nd index is end location
-		List<List<Integer>> distances = new Distances().readFile();
-		// Convert : Board -> GameState
-		MyGameState x = MyGameState.convert(board);
-		ImmutableList<Move> moves = x.getAvailableMoves().asList();
-		// return move at index found using minimax
-		int index = minimax(distances, true, 3, 3, Integer.MIN_VALUE, Integer.MAX_VALUE, x);
-		return moves.get(index);
+		// Deadline counts from now, so loading the distance tables is part of the budget
+		long start = System.nanoTime();
+		long deadline = start + (long) (timeoutPair.right().toNanos(timeoutPair.left()) * timeFraction);
+		// Shared ticket-aware distance tables, built once per JVM
+		TransportDistances distances = TransportDistances.standard();
+		// Convert : Board -> primitive search state, searched in place with make/unmake
+		SearchState state = SearchState.from(board);
+		if (Boolean.getBoolean(BELIEF_PROPERTY)) {
+			if (belief == null || !belief.isFor(board)) belief = MrXBelief.of(board);
+			belief.update(board);
+			state.trackBelief(belief.bits());
+		}
+		if (table == null) table = new TranspositionTable(Integer.getInteger(TABLE_ENTRIES_PROPERTY, DEFAULT_TABLE_ENTRIES));
+		table.nextGeneration();
+		if (pool == null && threads > 1) pool = new ForkJoinPool(threads);
+		// Search deeper until the deadline, keeping the best move of the last completed depth
+		long budget = Long.getLong(NODE_BUDGET_PROPERTY, Long.MAX_VALUE);
+		ParallelSearch search = new ParallelSearch(state, distances, table, deadline, budget, pool);
+		int move = search.search(Minimax.MAX_DEPTH);
+		lastSearch = new SearchStats(System.nanoTime() - start, search.nodes(), search.completedDepth(),
+				search.cutoffs(), search.tableHits());
+		return state.toMove(move);
 	}
 
-	public int minimax(List<List<Integer>> distances, Boolean MrXTurn, int source, int depth, int Alpha, int Beta,  MyGameState state) {
-		// Terminates recursion at depth 0 or at a win state
-		if (depth == 0) {
-			return new Score().score(state, distances, state.getMrX());
-		}
-		if (!state.getWinner().isEmpty()) return new Score().score(state);
-		// Maximising Player recursively picks best eval at each level
-		if (MrXTurn) {
-			int maxEval = Integer.MIN_VALUE;
-			int i = 0, index = 0;
-			for (Move m : state.getAvailableMoves()) {
-				MyGameState next = (MyGameState) state.advance(m);
-				int eval = minimax(distances,false, source, depth - 1, Alpha, Beta, next);
-				// Update index at top level
-				if (depth == source) {
-					if (eval > maxEval) index = i;
-				}
-				Alpha = Integer.max(Alpha, eval);
-				maxEval = Integer.max(eval, maxEval);
-				// increment temporary index and Alpha-Beta prune if necessary
-				i += 1;
-				if (Beta <= Alpha) break;
-			}
-			// Return index or eval
-			if (depth == source) return index;
-			else return maxEval;
-		}
-		// Minimising Player picks move with worst eval at each level
-		else {
-			int minEval = Integer.MAX_VALUE;
-			// Improve runtime by keeping moves that make MrX score worse
-			for (Move m : remove(state, state.getAvailableMoves(), distances)) {
-				MyGameState next = (MyGameState) state.advance(m);
-				// Recurse with lower depth and MrX turn if all detectives moved
-				int eval;
-				if (next.getRemaining().contains(Piece.MrX.MRX)) {
-					eval = minimax(distances, true, source, depth - 1, Alpha, Beta, next);
-				} else {
-					eval = minimax(distances, false, source, depth, Alpha, Beta, next);
-				}
-				minEval = Integer.min(minEval, eval);
-				Beta = Integer.min(eval, Beta);
-				// Alpha-Beta prune if necessary
-				if (Beta <= Alpha) break;
-			}
-			return minEval;
-		}
+	@Override
+	public SearchStats lastSearch() {
+		return lastSearch;
 	}
 
-	ImmutableSet<Move> remove(MyGameState state, ImmutableSet<Move> moves, List<List<Integer>> distances) {
-		// Returns moves that provide a lower MrX score
-		return ImmutableSet.copyOf(moves.stream().filter(m -> new Score().score(state.advance(m), distances, state.getMrX()) < new Score().score(state, distances, state.getMrX())).toList());
+	@Override
+	public void onTerminate() {
+		if (pool != null) pool.shutdownNow();
+		pool = null;
+		table = null;
+		belief = null;
 	}
 
-}
\ No newline at end of file
+}
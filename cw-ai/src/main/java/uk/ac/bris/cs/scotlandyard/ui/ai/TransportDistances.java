@@ -0,0 +1,91 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Ticket-aware distances: one {@link DistanceTable} for every subset of
+ * {@link ScotlandYard.Transport}s, indexed by transport bitmask (see {@link CompactGraph#mask}).
+ * A player's table is picked from the tickets they hold, so a detective without underground
+ * tickets is measured without underground edges and only Mr X with a secret ticket can use a ferry.
+ */
+public final class TransportDistances {
+
+    private final DistanceTable[] tables;
+
+    private TransportDistances(DistanceTable[] tables) {
+        this.tables = tables;
+    }
+
+    // Builds the tables for every transport mask of a graph
+    public static TransportDistances of(ImmutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph) {
+        return of(CompactGraph.of(graph), DistanceTable.of(graph));
+    }
+
+    private static TransportDistances of(CompactGraph graph, DistanceTable all) {
+        DistanceTable[] tables = new DistanceTable[CompactGraph.ALL_TRANSPORTS + 1];
+        for (int mask = 0; mask < CompactGraph.ALL_TRANSPORTS; mask++) {
+            tables[mask] = DistanceTable.of(graph, mask);
+        }
+        tables[CompactGraph.ALL_TRANSPORTS] = all;
+        return new TransportDistances(tables);
+    }
+
+    // Returns the table using only transports in mask
+    public DistanceTable forMask(int mask) {
+        return tables[mask];
+    }
+
+    // Returns the table of transports a player currently holds tickets for
+    public DistanceTable forPlayer(Player player) {
+        return tables[mask(player)];
+    }
+
+    // Returns number of hops between two nodes using only transports in mask
+    public int distance(int mask, int from, int to) {
+        return tables[mask].distance(from, to);
+    }
+
+    // Returns the transport mask a player can travel with
+    public static int mask(Player player) {
+        return mask(player.tickets(), player.isMrX());
+    }
+
+    public static int mask(Map<ScotlandYard.Ticket, Integer> tickets, boolean mrX) {
+        return mask(ticket -> tickets.getOrDefault(ticket, 0), mrX);
+    }
+
+    public static int mask(Board.TicketBoard tickets, boolean mrX) {
+        // Secret tickets let Mr X use any transport, ferries need one
+        if (mrX && tickets.getCount(ScotlandYard.Ticket.SECRET) > 0) return CompactGraph.ALL_TRANSPORTS;
+        int mask = 0;
+        for (ScotlandYard.Transport t : ScotlandYard.Transport.values()) {
+            if (tickets.getCount(t.requiredTicket()) > 0) mask |= CompactGraph.mask(t);
+        }
+        return mask;
+    }
+
+    // Returns the shared tables for the standard graph
+    public static TransportDistances standard() {
+        return Standard.DISTANCES;
+    }
+
+    // Holder class so the standard tables are built lazily, once, on first use
+    private static final class Standard {
+        private static final TransportDistances DISTANCES = load();
+
+        private static TransportDistances load() {
+            try {
+                return of(CompactGraph.of(ScotlandYard.standardGraph()), DistanceTable.standard());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
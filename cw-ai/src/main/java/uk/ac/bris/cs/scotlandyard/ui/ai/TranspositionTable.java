@@ -0,0 +1,85 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+/**
+ * Fixed-size hash table of search results keyed by {@link SearchState#hash()}.
+ * Each bucket has two slots: one kept for the deepest result (replaced by results at least as
+ * deep, or left over from an older search) and one always replaced. An entry is two longs, the
+ * packed data and the key XOR-ed with that data, so a read torn by a concurrent write fails the
+ * key check and is treated as a miss. No locks are taken.
+ */
+final class TranspositionTable {
+
+    // Bound types: the stored score is exact, at least (fail high) or at most (fail low) the real score
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    // Entry layout: move (28 bits), score (16), depth (8), bound (2), generation (6)
+    private static final int SCORE_SHIFT = 28, DEPTH_SHIFT = 44, BOUND_SHIFT = 52, GENERATION_SHIFT = 54;
+    private static final long MOVE_MASK = (1L << 28) - 1;
+    private static final int GENERATIONS = 64;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation;
+
+    // entries is rounded up to a power of two, at least two
+    TranspositionTable(int entries) {
+        int size = Integer.highestOneBit(Integer.max(entries, 2) - 1) << 1;
+        keys = new long[size];
+        data = new long[size];
+        mask = size / 2 - 1;
+    }
+
+    // Starts a new search, entries from older searches are replaced first
+    void nextGeneration() {
+        generation = (generation + 1) % GENERATIONS;
+    }
+
+    // Returns the entry stored for hash, or 0 if there is none
+    long probe(long hash) {
+        int bucket = index(hash);
+        for (int slot = bucket; slot < bucket + 2; slot++) {
+            long entry = data[slot];
+            if (entry != 0 && (keys[slot] ^ entry) == hash) return entry;
+        }
+        return 0;
+    }
+
+    void store(long hash, int depth, int bound, int score, int move) {
+        long entry = (move == Minimax.NO_MOVE ? MOVE_MASK : move & MOVE_MASK)
+                | (long) (clamp(score) & 0xFFFF) << SCORE_SHIFT
+                | (long) depth << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) generation << GENERATION_SHIFT;
+        int slot = index(hash);
+        long deepest = data[slot];
+        boolean replaceDeepest = deepest == 0 || (keys[slot] ^ deepest) == hash
+                || depth(deepest) <= depth || generation(deepest) != generation;
+        if (!replaceDeepest) slot++;
+        data[slot] = entry;
+        keys[slot] = hash ^ entry;
+    }
+
+    private int index(long hash) {
+        return ((int) (hash ^ hash >>> 32) & mask) * 2;
+    }
+
+    private static int clamp(int score) {
+        return Integer.max(Short.MIN_VALUE, Integer.min(Short.MAX_VALUE, score));
+    }
+
+    static int move(long entry) {
+        int move = (int) (entry & MOVE_MASK);
+        return move == MOVE_MASK ? Minimax.NO_MOVE : move;
+    }
+
+    static int score(long entry) { return (short) (entry >>> SCORE_SHIFT); }
+
+    static int depth(long entry) { return (int) (entry >>> DEPTH_SHIFT) & 0xFF; }
+
+    static int bound(long entry) { return (int) (entry >>> BOUND_SHIFT) & 3; }
+
+    private static int generation(long entry) { return (int) (entry >>> GENERATION_SHIFT) & (GENERATIONS - 1); }
+}
@@ -0,0 +1,76 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of a {@link SearchState}. A state's hash is the XOR of the keys
+ * of its parts, so a move updates it by XOR-ing out the old parts and XOR-ing in the new ones.
+ * Keys come from a fixed seed, so hashes are the same in every run.
+ */
+final class Zobrist {
+
+    static final int PLAYERS = 8;
+    static final int NODES = 512;
+    static final int TICKETS = 5;
+    // Ticket counts and log sizes wrap around, a shared key only costs an occasional collision
+    static final int COUNTS = 64;
+    static final int LOG_SIZES = 64;
+
+    private static final long[][] LOCATION = new long[PLAYERS][NODES];
+    private static final long[][][] TICKET = new long[PLAYERS][TICKETS][COUNTS];
+    private static final long[] REMAINING = new long[PLAYERS];
+    private static final long[] LOG_SIZE = new long[LOG_SIZES];
+    private static final long[] REVEALED = new long[NODES];
+    private static final long[] BELIEF = new long[NODES];
+    private static final long[] VACATED = new long[NODES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5C07_1A4DL);
+        for (long[] keys : LOCATION) fill(keys, random);
+        for (long[][] player : TICKET) for (long[] keys : player) fill(keys, random);
+        fill(REMAINING, random);
+        fill(LOG_SIZE, random);
+        fill(REVEALED, random);
+        fill(BELIEF, random);
+        fill(VACATED, random);
+    }
+
+    private Zobrist() {}
+
+    private static void fill(long[] keys, SplittableRandom random) {
+        for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+    }
+
+    // Key of player p standing on node
+    static long location(int p, int node) { return LOCATION[p][node]; }
+
+    // Key of player p holding count of a ticket (by ordinal)
+    static long tickets(int p, int ticket, int count) { return TICKET[p][ticket][count & (COUNTS - 1)]; }
+
+    // Key of every player in a remaining bitmask
+    static long remaining(int mask) {
+        long key = 0;
+        for (int p = 0; mask != 0; p++, mask >>>= 1) if ((mask & 1) != 0) key ^= REMAINING[p];
+        return key;
+    }
+
+    // Key of Mr X's travel log length
+    static long logSize(int size) { return LOG_SIZE[size & (LOG_SIZES - 1)]; }
+
+    // Key of the node Mr X was last seen at, 0 if never
+    static long revealed(int node) { return REVEALED[node]; }
+
+    // Key of the node a detective left that another has to move onto next
+    static long vacated(int node) { return VACATED[node]; }
+
+    // Key of the bitset of nodes the detectives think Mr X could be on
+    static long belief(long[] possible) {
+        long key = 0;
+        for (int w = 0; w < possible.length; w++) {
+            for (long bits = possible[w]; bits != 0; bits &= bits - 1) {
+                key ^= BELIEF[w * 64 + Long.numberOfTrailingZeros(bits)];
+            }
+        }
+        return key;
+    }
+}
@@ -4,5 +4,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ScoreTest.class, DistanceTest.class})
+@Suite.SuiteClasses({ScoreTest.class, DistanceTest.class, SearchStateTest.class, MinimaxTest.class,
+        TranspositionTableTest.class, ParallelSearchTest.class,
+        MonteCarloTest.class, MrXBeliefTest.class, SelfPlayTest.class, MetricsTest.class})
 public class AllTest { }
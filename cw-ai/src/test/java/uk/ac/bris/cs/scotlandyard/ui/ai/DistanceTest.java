@@ -1,48 +1,121 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import uk.ac.bris.cs.scotlandyard.model.*;
 
 import java.io.IOException;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public  class DistanceTest {
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void distance1() {
-        List<List<Integer>> distances = new Distances().readFile();
-        assert(distances.get(50).get(94) == 4);
+        DistanceTable distances = DistanceTable.standard();
+        assert(distances.distance(51, 94) == 4);
         // Best route 51 -> 67 -> 79 -> 93 -> 94
     }
 
     @Test
     public void distance2() {
-        List<List<Integer>> distances = new Distances().readFile();
-        assert(distances.get(50).get(155) == 5);
+        DistanceTable distances = DistanceTable.standard();
+        assert(distances.distance(51, 155) == 5);
         // Best route 51 -> 67 -> 111 -> 153 -> 154 -> 155
     }
 
     @Test
     public void distance3() {
-        List<List<Integer>> distances = new Distances().readFile();
-        assert(distances.get(0).get(1) == 0);
+        DistanceTable distances = DistanceTable.standard();
+        assert(distances.distance(1, 1) == 0);
     }
 
     @Test
     public void distance4() {
-        List<List<Integer>> distances = new Distances().readFile();
-        assert(distances.get(0).get(9) == 1);
+        DistanceTable distances = DistanceTable.standard();
+        assert(distances.distance(1, 9) == 1);
         // Best route 1 -> 9
     }
 
     @Test
     public void distance5() {
-        List<List<Integer>> distances = new Distances().readFile();
-        assert(distances.get(85).get(158) == 3);
+        DistanceTable distances = DistanceTable.standard();
+        assert(distances.distance(86, 158) == 3);
         // Best route 186 -> 116 -> 142 -> 158
     }
 
+    @Test
+    public void transportDistances() throws IOException {
+        // Taxi only and underground only routes from 1
+        CompactGraph graph = CompactGraph.of(ScotlandYard.standardGraph());
+        DistanceTable taxi = DistanceTable.of(graph, CompactGraph.mask(ScotlandYard.Transport.TAXI));
+        DistanceTable underground = DistanceTable.of(graph, CompactGraph.mask(ScotlandYard.Transport.UNDERGROUND));
+        assert(taxi.distance(1, 46) == 4);
+        assert(underground.distance(1, 46) == 1);
+        assert(underground.distance(51, 94) == DistanceTable.UNREACHABLE);
+        // Ferry 115 -> 108 needs a secret ticket
+        DistanceTable noFerry = DistanceTable.of(graph, CompactGraph.ALL_TRANSPORTS & ~CompactGraph.mask(ScotlandYard.Transport.FERRY));
+        assert(noFerry.distance(115, 108) == 3);
+        assert(DistanceTable.standard().distance(115, 108) == 1);
+    }
+
+    @Test
+    public void ticketMasks() {
+        // Detectives travel by the tickets they hold, Mr X anywhere with a secret ticket
+        Player detective = new Player(Piece.Detective.BLUE, ScotlandYard.defaultDetectiveTickets(), 1);
+        assert(TransportDistances.mask(detective) == CompactGraph.ALL_TRANSPORTS - CompactGraph.mask(ScotlandYard.Transport.FERRY));
+        Player noUnderground = new Player(Piece.Detective.BLUE, ImmutableMap.of(ScotlandYard.Ticket.TAXI, 1, ScotlandYard.Ticket.UNDERGROUND, 0), 1);
+        assert(TransportDistances.mask(noUnderground) == CompactGraph.mask(ScotlandYard.Transport.TAXI));
+        Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), 1);
+        assert(TransportDistances.mask(mrX) == CompactGraph.ALL_TRANSPORTS);
+    }
+
+    @Test
+    public void ticketAwareDistances() {
+        // Without underground tickets 1 -> 46 is a bus ride, with only taxis it is 4 hops
+        TransportDistances distances = TransportDistances.standard();
+        Player taxiOnly = new Player(Piece.Detective.BLUE, ImmutableMap.of(ScotlandYard.Ticket.TAXI, 5), 1);
+        assert(distances.forPlayer(taxiOnly).distance(1, 46) == 4);
+        assert(distances.distance(CompactGraph.ALL_TRANSPORTS, 1, 46) == 1);
+        assert(distances.forMask(0).distance(1, 46) == DistanceTable.UNREACHABLE);
+        assert(distances.forMask(CompactGraph.ALL_TRANSPORTS) == DistanceTable.standard());
+    }
+
+    @Test
+    public void distanceFileRoundTrip() throws IOException {
+        // Table written to file is mapped back with identical cells
+        Path file = folder.getRoot().toPath().resolve("distances.bin");
+        DistanceTable table = DistanceTable.load(file, ScotlandYard.standardGraph());
+        assert(Files.size(file) == Distances.HEADER_BYTES + table.size() * table.size());
+        DistanceTable mapped = DistanceTable.load(file, ScotlandYard.standardGraph());
+        assert(mapped.cells().equals(table.cells()));
+        assert(mapped.distance(51, 94) == 4);
+    }
+
+    @Test
+    public void distanceFileStaleChecksumRegenerated() throws IOException {
+        // File written for another graph is ignored and rewritten
+        Path file = folder.getRoot().toPath().resolve("distances.bin");
+        DistanceTable table = DistanceTable.standard();
+        new Distances().writeFile(file, new DistanceTable(table.size(), ByteBuffer.allocate(table.size() * table.size())), 1L);
+        assert(new Distances().readFile(file, Distances.checksum(ScotlandYard.standardGraph())) == null);
+        DistanceTable loaded = DistanceTable.load(file, ScotlandYard.standardGraph());
+        assert(loaded.distance(51, 94) == 4);
+        assert(new Distances().readFile(file, Distances.checksum(ScotlandYard.standardGraph())) != null);
+    }
+
+    @Test
+    public void distanceTableShared() {
+        // Table is built once and reused by every caller
+        assert(DistanceTable.standard() == DistanceTable.standard());
+    }
+
     @Test
     public void getMrXNullLocationTest() throws IOException {
         Score score = new Score();
@@ -0,0 +1,43 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test public void percentileIsNearestRank() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (long value : new long[]{10, 9, 8, 7, 6, 5, 4, 3, 2, 1}) histogram.record(value);
+        assert(histogram.percentile(50) == 5);
+        assert(histogram.percentile(90) == 9);
+        assert(histogram.percentile(99) == 10);
+        assert(histogram.min() == 1 && histogram.max() == 10);
+        assert(histogram.mean() == 5.5);
+        assert(new Metrics.Histogram().percentile(50) == 0);
+    }
+
+    @Test public void bucketsArePowersOfTwo() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (long value : new long[]{0, 1, 2, 3, 4, 5, Long.MAX_VALUE}) histogram.record(value);
+        long[] buckets = histogram.buckets();
+        assert(buckets[0] == 2); // 0 and 1
+        assert(buckets[1] == 1); // 2
+        assert(buckets[2] == 2); // 3 and 4
+        assert(buckets[3] == 1); // 5
+        assert(buckets[63] == 1);
+        assert(Metrics.Histogram.upperBound(2) == 4);
+    }
+
+    @Test public void exportsOneRowPerHistogram() {
+        Metrics metrics = new Metrics();
+        metrics.record("mrX", new SearchStats(2_000_000, 1000, 3, 40, 7));
+        metrics.record("detectives.nanos", 5);
+        String[] csv = metrics.toCsv().split("\n");
+        assert(csv.length == 1 + 7);
+        assert(csv[0].equals("name,count,min,mean,p50,p90,p99,max"));
+        assert(csv[1].startsWith("detectives.nanos,1,5,5.00,"));
+        assert(metrics.toCsv().contains("mrX.nodesPerSecond,1,500000,"));
+        String json = metrics.toJson();
+        assert(json.contains("\"mrX.depth\": {\"count\": 1, \"min\": 3,"));
+        assert(json.contains("\"buckets\": [[4, 1]]"));
+    }
+}
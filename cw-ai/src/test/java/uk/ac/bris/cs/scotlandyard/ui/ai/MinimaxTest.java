@@ -0,0 +1,117 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import io.atlassian.fugue.Pair;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class MinimaxTest {
+
+    @Test public void searchStopsAtDeadline() throws IOException {
+        Board.GameState board = SearchStateTest.start(4, 5);
+        SearchState state = SearchState.from(board);
+        long start = System.nanoTime();
+        Minimax minimax = new Minimax(state, TransportDistances.standard(), null, null, start + TimeUnit.MILLISECONDS.toNanos(300));
+        int move = minimax.search(Minimax.MAX_DEPTH);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assert(elapsed < 1000);
+        assert(minimax.completedDepth() >= 1);
+        assert(board.getAvailableMoves().contains(state.toMove(move)));
+        // The state is left as it was found
+        assert(state.ply() == 0);
+    }
+
+    @Test public void searchStopsAtMaxDepth() throws IOException {
+        SearchState state = SearchState.from(SearchStateTest.start(4, 5));
+        Minimax minimax = new Minimax(state, TransportDistances.standard(), null, null, Long.MAX_VALUE);
+        minimax.search(2);
+        assert(minimax.completedDepth() == 2);
+    }
+
+    @Test public void tableSearchesFewerNodes() throws IOException {
+        Board.GameState board = SearchStateTest.start(4, 5);
+        SearchState state = SearchState.from(board);
+        Minimax plain = new Minimax(state, TransportDistances.standard(), null, null, Long.MAX_VALUE);
+        plain.search(2);
+        Minimax cached = new Minimax(state, TransportDistances.standard(), new TranspositionTable(1 << 16), null, Long.MAX_VALUE);
+        int move = cached.search(2);
+        assert(cached.tableHits() > 0);
+        assert(cached.nodes() < plain.nodes());
+        assert(board.getAvailableMoves().contains(state.toMove(move)));
+        assert(state.ply() == 0);
+    }
+
+    @Test public void orderingSearchesFewerNodes() throws IOException {
+        long plainNodes = 0, orderedNodes = 0;
+        for (int seed = 1; seed <= 4; seed++) {
+            Board.GameState board = SearchStateTest.start(seed, 5);
+            SearchState state = SearchState.from(board);
+            Minimax plain = new Minimax(state, TransportDistances.standard(), null, null, Long.MAX_VALUE);
+            plain.search(3);
+            Minimax ordered = new Minimax(state, TransportDistances.standard(), null, new MoveOrder(state), Long.MAX_VALUE);
+            int move = ordered.search(3);
+            assert(ordered.completedDepth() == plain.completedDepth());
+            assert(board.getAvailableMoves().contains(state.toMove(move)));
+            assert(state.ply() == 0);
+            plainNodes += plain.nodes();
+            orderedNodes += ordered.nodes();
+        }
+        assert(orderedNodes < plainNodes);
+    }
+
+    @Test public void doubleHistoryIsKeptApartFromSingles() throws IOException {
+        SearchState state = SearchState.from(SearchStateTest.start(4, 5));
+        MoveOrder order = new MoveOrder(state);
+        int[] doubles = {Minimax.NO_MOVE, Minimax.NO_MOVE};
+        state.forEachMove(move -> {
+            if (!SearchState.isDouble(move)) return true;
+            doubles[doubles[0] == Minimax.NO_MOVE ? 0 : 1] = move;
+            return SearchState.ticket2(move) == SearchState.ticket2(doubles[0]);
+        });
+        assert(doubles[1] != Minimax.NO_MOVE);
+        order.cutoff(0, doubles[0], 3);
+        assert(order.history(doubles[0]) == 9);
+        // Neither a single nor a double with another second ticket shares it
+        assert(order.history(doubles[1]) == 0);
+        assert(state.forEachMove(move -> move == doubles[0] || order.history(move) == 0));
+    }
+
+    @Test public void nodeBudgetStopsSearch() throws IOException {
+        Board.GameState board = SearchStateTest.start(4, 5);
+        SearchState state = SearchState.from(board);
+        Minimax minimax = new Minimax(state, TransportDistances.standard(), null, null, Long.MAX_VALUE, 5000);
+        int move = minimax.search(Minimax.MAX_DEPTH);
+        assert(minimax.nodes() <= 5001);
+        assert(minimax.completedDepth() < Minimax.MAX_DEPTH);
+        assert(board.getAvailableMoves().contains(state.toMove(move)));
+        assert(state.ply() == 0);
+    }
+
+    @Test public void leavesBeforeARevealAreExtended() throws IOException {
+        // One round in, so Mr X's move after next is a reveal and depth 2 leaves aren't quiet
+        Board.GameState board = SearchStateTest.start(3, 5);
+        board = board.advance(board.getAvailableMoves().asList().get(0));
+        while (board.getAvailableMoves().stream().noneMatch(m -> m.commencedBy().isMrX())) {
+            board = board.advance(board.getAvailableMoves().asList().get(0));
+        }
+        SearchState state = SearchState.from(board);
+        Minimax plain = new Minimax(state, TransportDistances.standard(), null, null, Long.MAX_VALUE);
+        plain.extend(false);
+        plain.search(2);
+        Minimax extended = new Minimax(state, TransportDistances.standard(), null, null, Long.MAX_VALUE);
+        int move = extended.search(2);
+        assert(extended.nodes() > plain.nodes());
+        assert(board.getAvailableMoves().contains(state.toMove(move)));
+        assert(state.ply() == 0);
+    }
+
+    @Test public void pickMoveUsesTimeout() throws IOException {
+        Board.GameState board = SearchStateTest.start(9, 5);
+        long start = System.nanoTime();
+        Move move = new TheRealSlimShady(0.5).pickMove(board, new Pair<>(1L, TimeUnit.SECONDS));
+        assert(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assert(board.getAvailableMoves().contains(move));
+    }
+}
@@ -0,0 +1,54 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import io.atlassian.fugue.Pair;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class MonteCarloTest {
+
+    @Test public void everyIterationVisitsOneRootMove() throws IOException {
+        SearchState state = SearchState.from(SearchStateTest.start(1, 5));
+        MonteCarloTree tree = new MonteCarloTree(state, TransportDistances.standard(), 1);
+        tree.search(Long.MAX_VALUE, 2000);
+        int[] visits = new int[state.maxMoves()];
+        int count = tree.rootVisits(visits);
+        assert(count > 1);
+        assert(Arrays.stream(visits).sum() == 2000);
+        assert(tree.nodes() > count);
+        // The state is left as it was found
+        assert(state.ply() == 0);
+    }
+
+    @Test public void treeStopsGrowingAtNodeCap() throws IOException {
+        SearchState state = SearchState.from(SearchStateTest.start(1, 5));
+        MonteCarloTree tree = new MonteCarloTree(state, TransportDistances.standard(), 1, 1000);
+        tree.search(Long.MAX_VALUE, 5000);
+        assert(tree.nodes() > 1 && tree.nodes() <= 1000);
+        assert(tree.iterations() == 5000);
+    }
+
+    @Test public void sameSeedSearchesSameTree() throws IOException {
+        SearchState state = SearchState.from(SearchStateTest.start(2, 5));
+        MonteCarloShady ai = new MonteCarloShady(1, 1);
+        int[] first = ai.search(state, TransportDistances.standard(), Long.MAX_VALUE, 1000, 42);
+        int[] second = ai.search(state, TransportDistances.standard(), Long.MAX_VALUE, 1000, 42);
+        assert(Arrays.equals(first, second));
+    }
+
+    @Test public void pickMoveUsesTimeout() throws IOException {
+        Board.GameState board = SearchStateTest.start(9, 5);
+        MonteCarloShady ai = new MonteCarloShady(0.5, 2);
+        try {
+            long start = System.nanoTime();
+            Move move = ai.pickMove(board, new Pair<>(1L, TimeUnit.SECONDS));
+            assert(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            assert(board.getAvailableMoves().contains(move));
+        } finally {
+            ai.onTerminate();
+        }
+    }
+}
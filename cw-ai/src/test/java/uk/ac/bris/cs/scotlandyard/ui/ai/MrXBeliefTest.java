@@ -0,0 +1,148 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MrXBeliefTest {
+
+    // Mr X is always somewhere the belief allows, and exactly there after a reveal
+    @Test public void containsMrXOnRandomGames() throws IOException {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            Board.GameState board = SearchStateTest.start(seed, 5);
+            SearchState state = SearchState.from(board);
+            MrXBelief belief = MrXBelief.of(board);
+            while (board.getWinner().isEmpty()) {
+                belief.update(board);
+                assert(belief.contains(state.mrXLocation()));
+                List<LogEntry> log = board.getMrXTravelLog();
+                if (!log.isEmpty() && log.get(log.size() - 1).location().isPresent()) assert(belief.size() == 1);
+                for (Piece piece : board.getPlayers()) {
+                    if (piece.isDetective()) assert(!belief.contains(board.getDetectiveLocation((Piece.Detective) piece).get()));
+                }
+                List<Move> moves = board.getAvailableMoves().asList();
+                Move move = moves.get(random.nextInt(moves.size()));
+                state.make(state.encode(move));
+                board = board.advance(move);
+            }
+        }
+    }
+
+    // A new game on the same setup isn't mistaken for the old one, and keeps none of its removals.
+    // Mr X starts at 35, and the detectives on the start locations 45 and 51
+    @Test public void newGameOnSameSetupStartsOver() throws IOException {
+        GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24MOVES.asList());
+        Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), 35);
+        Board.GameState first = new MyGameStateFactory().build(setup, mrX,
+                ImmutableList.of(new Player(Piece.Detective.BLUE, ScotlandYard.defaultDetectiveTickets(), 45)));
+        Board.GameState second = new MyGameStateFactory().build(setup, mrX,
+                ImmutableList.of(new Player(Piece.Detective.BLUE, ScotlandYard.defaultDetectiveTickets(), 51)));
+        MrXBelief belief = MrXBelief.of(first);
+        belief.update(first);
+        assert(!belief.contains(45));
+        assert(belief.isFor(second));
+        belief.update(second);
+        assert(belief.contains(45) && !belief.contains(51));
+        // Once Mr X has moved, only boards with the same log so far are from this game
+        Board.GameState moved = first.advance(first.getAvailableMoves().stream()
+                .filter(m -> m.commencedBy().isMrX()).findFirst().get());
+        belief.update(moved);
+        assert(!belief.isFor(second));
+        Board.GameState other = second.advance(second.getAvailableMoves().stream()
+                .filter(m -> m.commencedBy().isMrX() && m.accept(new Move.FunctionalVisitor<>(s -> s.ticket, d -> d.ticket1))
+                        != moved.getMrXTravelLog().get(0).ticket()).findFirst().get());
+        assert(!belief.isFor(other));
+        assert(belief.isFor(moved));
+    }
+
+    @Test public void spreadsAlongTicketEdges() throws IOException {
+        Board.GameState board = SearchStateTest.start(3, 1);
+        MrXBelief belief = MrXBelief.of(board);
+        belief.reveal(1);
+        belief.move(ScotlandYard.Ticket.UNDERGROUND);
+        // Underground from 1 goes to 46 only
+        assert(belief.size() == 1 && belief.contains(46));
+        belief.move(ScotlandYard.Ticket.SECRET);
+        assert(belief.contains(1) && belief.contains(74) && belief.contains(79) && belief.contains(13));
+        assert(belief.nodes().length == belief.size());
+    }
+
+    // The belief a search state keeps through make and unmake matches MrXBelief on games of single
+    // moves, and always holds Mr X
+    @Test public void searchStateBeliefMatchesOnRandomGames() throws IOException {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            Board.GameState board = SearchStateTest.start(seed, 5);
+            SearchState state = SearchState.from(board);
+            MrXBelief belief = MrXBelief.of(board);
+            belief.update(board);
+            state.trackBelief(belief.bits());
+            long[] initial = belief.bits();
+            while (board.getWinner().isEmpty()) {
+                if (state.isMrXTurn()) {
+                    belief.update(board);
+                    long[] expected = belief.bits();
+                    for (int w = 0; w < expected.length; w++) {
+                        assert((state.belief()[w] & ~state.occupied()[w]) == expected[w]);
+                    }
+                }
+                assert((state.belief()[state.mrXLocation() >>> 6] & 1L << state.mrXLocation()) != 0);
+                assert(state.hash() == state.computeHash());
+                List<Move> moves = board.getAvailableMoves().stream().filter(m -> m instanceof Move.SingleMove).toList();
+                Move move = moves.get(random.nextInt(moves.size()));
+                state.make(state.encode(move));
+                board = board.advance(move);
+            }
+            state.unmakeTo(0);
+            for (int w = 0; w < initial.length; w++) assert(state.belief()[w] == initial[w]);
+        }
+    }
+
+    // Mr X's double moves spending two tickets in either order reach the same position, which only
+    // the belief tells apart, so the hash does too once the belief is tracked
+    @Test public void transposedTicketsHashApartByBelief() throws IOException {
+        Board.GameState board = SearchStateTest.start(1, 5);
+        SearchState plain = SearchState.from(board);
+        SearchState tracked = SearchState.from(board);
+        MrXBelief belief = MrXBelief.of(board);
+        belief.update(board);
+        tracked.trackBelief(belief.bits());
+        assert(tracked.hash() == tracked.computeHash());
+        int[] moves = new int[tracked.maxMoves()];
+        int count = tracked.availableMoves(moves);
+        int apart = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                int a = moves[i], b = moves[j];
+                if (!SearchState.isDouble(a) || !SearchState.isDouble(b)
+                        || SearchState.ticket1(a) == SearchState.ticket2(a)
+                        || SearchState.ticket1(a) != SearchState.ticket2(b)
+                        || SearchState.ticket2(a) != SearchState.ticket1(b)
+                        || SearchState.destination(a) != SearchState.destination(b)) continue;
+                plain.make(a);
+                long plainHash = plain.hash();
+                plain.unmake();
+                plain.make(b);
+                assert(plain.hash() == plainHash);
+                plain.unmake();
+                tracked.make(a);
+                long hash = tracked.hash();
+                long[] possible = tracked.belief().clone();
+                assert(hash == tracked.computeHash());
+                tracked.unmake();
+                tracked.make(b);
+                boolean same = Arrays.equals(possible, tracked.belief());
+                assert((tracked.hash() == hash) == same);
+                tracked.unmake();
+                if (!same) apart++;
+            }
+        }
+        assert(apart > 0);
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelSearchTest {
+
+    private static int search(SearchState state, ForkJoinPool pool, int depth) {
+        TranspositionTable table = new TranspositionTable(1 << 16);
+        return new ParallelSearch(state, TransportDistances.standard(), table, Long.MAX_VALUE, pool).search(depth);
+    }
+
+    @Test public void singleThreadIsDeterministic() throws IOException {
+        for (int seed = 0; seed < 3; seed++) {
+            SearchState state = SearchState.from(SearchStateTest.start(seed, 5));
+            int move = search(state, null, 2);
+            assert(search(state, null, 2) == move);
+            assert(search(SearchState.from(SearchStateTest.start(seed, 5)), null, 2) == move);
+        }
+    }
+
+    @Test public void poolSearchFindsLegalMove() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Board.GameState board = SearchStateTest.start(8, 5);
+            SearchState state = SearchState.from(board);
+            ParallelSearch search = new ParallelSearch(state, TransportDistances.standard(),
+                    new TranspositionTable(1 << 16), Long.MAX_VALUE, pool);
+            int move = search.search(2);
+            assert(search.completedDepth() == 2);
+            assert(search.nodes() > 0);
+            assert(board.getAvailableMoves().contains(state.toMove(move)));
+            // Workers search copies, the given state is left as it was
+            assert(state.ply() == 0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test public void poolSearchStopsAtDeadline() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Board.GameState board = SearchStateTest.start(4, 5);
+            SearchState state = SearchState.from(board);
+            long start = System.nanoTime();
+            int move = new ParallelSearch(state, TransportDistances.standard(), new TranspositionTable(1 << 16),
+                    start + TimeUnit.MILLISECONDS.toNanos(300), pool).search(Minimax.MAX_DEPTH);
+            assert(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            assert(board.getAvailableMoves().contains(state.toMove(move)));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
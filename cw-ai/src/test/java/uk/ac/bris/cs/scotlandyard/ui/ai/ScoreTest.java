@@ -1,9 +1,10 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 import uk.ac.bris.cs.scotlandyard.model.*;
 import java.io.IOException;
-import java.util.List;
+import java.util.Random;
 
 public class ScoreTest {
 
@@ -37,7 +38,7 @@ public class ScoreTest {
         MyGameStateFactory factory = new MyGameStateFactory();
         Board.GameState state = factory.build(setup, MrX, dets);
         MyGameState s = MyGameState.convert(state);
-        List<List<Integer>> distances = new Distances().readFile();
+        TransportDistances distances = TransportDistances.standard();
         // Detective is at 94 and MrX is at 51
         // Freedom = 5 and total = 4. Best route 51 -> 67 -> 79 -> 93 -> 94
         assert(score.score(s, distances, s.getMrX()) == 14);
@@ -53,9 +54,98 @@ public class ScoreTest {
         MyGameStateFactory factory = new MyGameStateFactory();
         Board.GameState state = factory.build(setup, MrX, dets);
         MyGameState s = MyGameState.convert(state);
-        List<List<Integer>> distances = new Distances().readFile();
+        TransportDistances distances = TransportDistances.standard();
         // Detectives at 155, 94 and MrX is at 51
         // Freedom = 5 and total = 9. Best route 51 -> 67 -> 79 -> 93 -> 94 and 51 -> 67 -> 111 -> 153 -> 154 -> 155
         assert(score.score(s, distances, s.getMrX()) == 19);
     }
+
+    // Detective move scores worked out from the parent match scoring the child
+    @Test public void scoreAfterMatchesScoreOfChild() throws IOException {
+        TransportDistances distances = TransportDistances.standard();
+        Score score = new Score();
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            SearchState state = SearchState.from(SearchStateTest.start(seed, 5));
+            int[] moves = new int[state.maxMoves()];
+            int[] after = new int[state.maxMoves()];
+            while (state.winner() == SearchState.NONE) {
+                int count = state.availableMoves(moves);
+                if (!state.isMrXTurn()) {
+                    Score.Terms parent = new Score.Terms();
+                    score.score(state, distances, parent);
+                    for (int i = 0; i < count; i++) after[i] = score.scoreAfter(state, distances, parent, moves[i]);
+                    for (int i = 0; i < count; i++) {
+                        state.make(moves[i]);
+                        boolean capture = SearchState.destination1(moves[i]) == state.mrXLocation()
+                                && state.winner() == SearchState.DETECTIVES_WIN;
+                        if (capture || state.winner() == SearchState.NONE) assert(after[i] == score.score(state, distances));
+                        state.unmake();
+                    }
+                }
+                state.make(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    // Scoring from the terms a tracking state keeps gives the same scores as working them out
+    @Test public void trackedScoreMatchesUntracked() throws IOException {
+        TransportDistances distances = TransportDistances.standard();
+        Score score = new Score();
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            Board.GameState board = SearchStateTest.start(seed, 5);
+            SearchState tracked = SearchState.from(board);
+            SearchState untracked = SearchState.from(board);
+            tracked.track(distances);
+            int[] moves = new int[tracked.maxMoves()];
+            while (tracked.winner() == SearchState.NONE) {
+                assert(score.score(tracked, distances) == score.score(untracked, distances));
+                int move = moves[random.nextInt(tracked.availableMoves(moves))];
+                tracked.make(move);
+                untracked.make(move);
+            }
+        }
+    }
+
+    // Mr X scores more when the detectives have lost track of him than just after a reveal
+    @Test public void beliefRewardsUncertainty() throws IOException {
+        TransportDistances distances = TransportDistances.standard();
+        Score score = new Score();
+        SearchState state = SearchState.from(SearchStateTest.start(4, 5));
+        long[] lost = new long[state.graph().words()];
+        for (int node = 1; node < state.graph().size(); node++) lost[node >>> 6] |= 1L << node;
+        long[] seen = new long[state.graph().words()];
+        seen[state.mrXLocation() >>> 6] |= 1L << state.mrXLocation();
+        int exact = score.score(state, distances);
+        state.trackBelief(seen);
+        int revealed = score.score(state, distances);
+        state.trackBelief(lost);
+        int hidden = score.score(state, distances);
+        assert(exact < revealed && revealed < hidden);
+    }
+
+    // A detective out of tickets counts as MAX_DISTANCE away, not UNREACHABLE, on every path
+    @Test public void detectiveWithoutTicketsIsCapped() throws IOException {
+        TransportDistances distances = TransportDistances.standard();
+        Score score = new Score();
+        GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24MOVES.asList());
+        Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), 51);
+        ImmutableMap<ScotlandYard.Ticket, Integer> none = ImmutableMap.of(ScotlandYard.Ticket.TAXI, 0,
+                ScotlandYard.Ticket.BUS, 0, ScotlandYard.Ticket.UNDERGROUND, 0,
+                ScotlandYard.Ticket.DOUBLE, 0, ScotlandYard.Ticket.SECRET, 0);
+        Board.GameState board = new MyGameStateFactory().build(setup, mrX, ImmutableList.of(
+                new Player(Piece.Detective.BLUE, ScotlandYard.defaultDetectiveTickets(), 155),
+                new Player(Piece.Detective.GREEN, none, 94)));
+        SearchState untracked = SearchState.from(board);
+        SearchState tracked = SearchState.from(board);
+        tracked.track(distances);
+        for (int p = 1; p < tracked.players(); p++) {
+            if (tracked.piece(p) == Piece.Detective.GREEN) assert(tracked.detectiveDistance(p) == Score.MAX_DISTANCE);
+        }
+        int expected = score.score(board, distances, 51);
+        assert(expected < 100);
+        assert(score.score(untracked, distances) == expected);
+        assert(score.score(tracked, distances) == expected);
+    }
 }
@@ -0,0 +1,336 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.graph.MutableValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.io.IOException;
+import java.util.*;
+
+public class SearchStateTest {
+
+    static Board.GameState start(int seed, int detectives) throws IOException {
+        GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24MOVES.asList());
+        Player MrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(seed));
+        List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, detectives);
+        List<Player> dets = new ArrayList<>();
+        for (int i = 0; i < detectives; i++) {
+            dets.add(new Player(Piece.Detective.values()[i], ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+        }
+        return new MyGameStateFactory().build(setup, MrX, ImmutableList.copyOf(dets));
+    }
+
+    private static int winner(Board board) {
+        if (board.getWinner().isEmpty()) return SearchState.NONE;
+        return board.getWinner().contains(Piece.MrX.MRX) ? SearchState.MRX_WINS : SearchState.DETECTIVES_WIN;
+    }
+
+    private static Set<Move> moves(SearchState state) {
+        int[] out = new int[state.maxMoves()];
+        int count = state.availableMoves(out);
+        Set<Move> moves = new HashSet<>();
+        for (int i = 0; i < count; i++) moves.add(state.toMove(out[i]));
+        assert(moves.size() == count);
+        return moves;
+    }
+
+    private static void assertSame(Board expected, SearchState state) {
+        assert(winner(expected) == state.winner());
+        assert(new HashSet<>(expected.getAvailableMoves()).equals(moves(state)));
+        assert(expected.getMrXTravelLog().equals(state.toGameState().getMrXTravelLog()));
+        for (int p = 0; p < state.players(); p++) {
+            Piece piece = state.piece(p);
+            for (ScotlandYard.Ticket t : ScotlandYard.Ticket.values()) {
+                assert(expected.getPlayerTickets(piece).get().getCount(t) == state.tickets(p, t.ordinal()));
+            }
+            if (piece.isDetective()) {
+                assert(expected.getDetectiveLocation((Piece.Detective) piece).get() == state.location(p));
+            }
+        }
+    }
+
+    // Plays random games on the reference model and the search state side by side
+    @Test public void matchesReferenceModelOnRandomGames() throws IOException {
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            Board.GameState expected = start(seed, 1 + seed % 5);
+            SearchState state = SearchState.from(expected);
+            ImmutableSet<Move> initial = expected.getAvailableMoves();
+            assertSame(expected, state);
+            while (expected.getWinner().isEmpty()) {
+                List<Move> moves = expected.getAvailableMoves().asList();
+                Move move = moves.get(random.nextInt(moves.size()));
+                state.make(state.encode(move));
+                expected = expected.advance(move);
+                int destination = move.accept(new Move.FunctionalVisitor<>(m -> m.destination, m -> m.destination2));
+                if (move.commencedBy().isMrX()) assert(state.mrXLocation() == destination);
+                assertSame(expected, state);
+            }
+            // Unmaking every move returns to the start
+            while (state.ply() > 0) state.unmake();
+            assert(moves(state).equals(initial));
+            assert(state.logSize() == 0);
+        }
+    }
+
+    // Random walks that back up as often as they go forward: after every make or unmake the state
+    // matches the boards advance made on the way, on the reference model and on MyGameState
+    @Test public void makeAndUnmakeMatchAdvanceOnRandomWalks() throws IOException {
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            Board.GameState start = start(seed, 1 + seed % 5);
+            SearchState state = SearchState.from(start);
+            Deque<Board.GameState> reference = new ArrayDeque<>(List.of(start));
+            Deque<Board.GameState> converted = new ArrayDeque<>(List.of(MyGameState.convert(start)));
+            for (int step = 0; step < 400; step++) {
+                if (state.ply() > 0 && (random.nextInt(3) == 0 || !reference.peek().getWinner().isEmpty())) {
+                    state.unmake();
+                    reference.pop();
+                    converted.pop();
+                } else {
+                    List<Move> moves = reference.peek().getAvailableMoves().asList();
+                    Move move = moves.get(random.nextInt(moves.size()));
+                    state.make(state.encode(move));
+                    reference.push(reference.peek().advance(move));
+                    converted.push(converted.peek().advance(move));
+                }
+                assert(state.ply() == reference.size() - 1);
+                assert(state.hash() == state.computeHash());
+                assertSame(reference.peek(), state);
+                assertSame(converted.peek(), state);
+            }
+            state.unmakeTo(0);
+            assertSame(start, state);
+        }
+    }
+
+    @Test public void unmakeToRevertsToPly() throws IOException {
+        Board.GameState board = start(8, 3);
+        SearchState state = SearchState.from(board);
+        long initial = state.hash();
+        int[] moves = new int[state.maxMoves()];
+        for (int i = 0; i < 6; i++) {
+            state.availableMoves(moves);
+            state.make(moves[0]);
+        }
+        state.unmakeTo(2);
+        assert(state.ply() == 2);
+        state.unmakeTo(0);
+        assert(state.hash() == initial);
+        assertSame(board, state);
+        try {
+            state.unmake();
+            assert(false);
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    // The hash kept up to date by make and unmake matches a full recompute
+    @Test public void hashMatchesRecomputeOnRandomGames() throws IOException {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            Board.GameState expected = start(seed, 5);
+            SearchState state = SearchState.from(expected);
+            long initial = state.hash();
+            while (expected.getWinner().isEmpty()) {
+                List<Move> moves = expected.getAvailableMoves().asList();
+                Move move = moves.get(random.nextInt(moves.size()));
+                state.make(state.encode(move));
+                expected = expected.advance(move);
+                assert(state.hash() == state.computeHash());
+                // Converting drops detectives without moves from remaining, so compare on Mr X's turns
+                if (state.isMrXTurn()) assert(state.hash() == SearchState.from(expected, state.mrXLocation()).hash());
+            }
+            while (state.ply() > 0) state.unmake();
+            assert(state.hash() == initial);
+        }
+    }
+
+    // The evaluation terms kept up to date by make and unmake match a full recompute, also on copies
+    @Test public void trackedTermsMatchRecomputeOnRandomWalks() throws IOException {
+        TransportDistances distances = TransportDistances.standard();
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            SearchState state = SearchState.from(start(seed, 1 + seed % 5));
+            state.track(distances);
+            int[] moves = new int[state.maxMoves()];
+            for (int step = 0; step < 300; step++) {
+                if (state.ply() > 0 && (random.nextInt(3) == 0 || state.winner() != SearchState.NONE)) state.unmake();
+                else state.make(moves[random.nextInt(state.availableMoves(moves))]);
+                assertTracked(step % 50 == 0 ? state.copy() : state, distances);
+            }
+        }
+    }
+
+    private static void assertTracked(SearchState state, TransportDistances distances) {
+        SearchState fresh = SearchState.from(state.toGameState(), state.mrXLocation());
+        int sum = 0;
+        for (int p = 1; p < state.players(); p++) {
+            int distance = Score.reachable(distances.distance(state.transportMask(p), state.location(p), state.mrXLocation()));
+            assert(state.detectiveDistance(p) == distance);
+            sum += distance;
+        }
+        assert(state.distanceSum() == sum);
+        int free = 0;
+        CompactGraph graph = state.graph();
+        for (int edge = graph.edgesStart(state.mrXLocation()); edge < graph.edgesEnd(state.mrXLocation()); edge++) {
+            if (!state.isOccupied(graph.target(edge))) free++;
+        }
+        assert(state.freeNeighbours() == free);
+        assert(state.lastRevealedLocation() == fresh.lastRevealedLocation());
+    }
+
+    // Detectives moving in either order reach the same position and the same hash
+    @Test public void transposedMovesHashEqually() throws IOException {
+        Board.GameState board = start(6, 2);
+        SearchState state = SearchState.from(board);
+        state.make(state.encode(board.getAvailableMoves().asList().get(0)));
+        int[] moves = new int[state.maxMoves()];
+        int count = state.availableMoves(moves);
+        int blue = -1, green = -1;
+        for (int i = 0; i < count; i++) {
+            if (SearchState.player(moves[i]) == 1 && blue < 0) blue = moves[i];
+            if (SearchState.player(moves[i]) == 2 && green < 0) green = moves[i];
+        }
+        state.make(blue);
+        state.make(green);
+        long hash = state.hash();
+        state.unmake();
+        state.unmake();
+        state.make(green);
+        state.make(blue);
+        assert(state.hash() == hash);
+        assert(state.isLegal(blue) == false);
+    }
+
+    // Every set of moves all the detectives can make in a round, in any order and without a capture,
+    // is reached through detectiveMoves by exactly one order, and everything it reaches is reached in
+    // some order. A capture ends the round early, so it may come in fewer moves
+    @Test public void detectiveMovesReachEveryJointMoveOnce() throws IOException {
+        for (int seed = 0; seed < 30; seed++) {
+            Random random = new Random(seed);
+            SearchState state = SearchState.from(start(seed, 3));
+            int[] moves = new int[state.maxMoves()];
+            while (state.winner() == SearchState.NONE) {
+                if (!state.isMrXTurn() && state.remaining() == state.detectivesMask()) {
+                    int[][] lists = new int[state.players()][state.maxSingleMoves()];
+                    int[] counts = new int[state.players()];
+                    for (int p = 1; p < state.players(); p++) counts[p] = state.movesIgnoringDetectives(p, lists[p]);
+                    Set<Set<Integer>> all = new HashSet<>();
+                    jointMoves(state, null, null, new ArrayDeque<>(), all);
+                    List<Set<Integer>> generated = new ArrayList<>();
+                    jointMoves(state, lists, counts, new ArrayDeque<>(), generated);
+                    assert(new HashSet<>(generated).size() == generated.size());
+                    assert(all.containsAll(generated));
+                    int detectives = Integer.bitCount(state.detectivesMask());
+                    for (Set<Integer> joint : all) {
+                        boolean capture = joint.stream().anyMatch(move -> SearchState.destination1(move) == state.mrXLocation());
+                        assert(joint.size() < detectives || capture || generated.contains(joint));
+                    }
+                }
+                int count = state.availableMoves(moves);
+                state.make(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    // Adds the moves made along each path to the end of the round, taking every available move, or
+    // those detectiveMoves gives if lists is given
+    private static void jointMoves(SearchState state, int[][] lists, int[] counts, Deque<Integer> path,
+            Collection<Set<Integer>> out) {
+        assert(state.hash() == state.computeHash());
+        if (state.isMrXTurn() || state.winner() != SearchState.NONE) {
+            out.add(new HashSet<>(path));
+            return;
+        }
+        int[] moves = new int[state.maxMoves()];
+        int count = lists == null ? state.availableMoves(moves) : state.detectiveMoves(lists, counts, moves);
+        assert(count > 0);
+        for (int i = 0; i < count; i++) {
+            state.make(moves[i]);
+            path.push(moves[i]);
+            jointMoves(state, lists, counts, path, out);
+            path.pop();
+            state.unmake();
+        }
+    }
+
+    // Filtering by occupied nodes gives each remaining detective's share of availableMoves
+    @Test public void movesIgnoringDetectivesFilterToAvailableMoves() throws IOException {
+        Random random = new Random(11);
+        SearchState state = SearchState.from(start(11, 5));
+        int[] moves = new int[state.maxMoves()];
+        int[] ignoring = new int[state.maxSingleMoves()];
+        while (state.winner() == SearchState.NONE) {
+            int count = state.availableMoves(moves);
+            for (int p = 1; p < state.players(); p++) {
+                if ((state.remaining() & 1 << p) == 0) continue;
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < count; i++) if (SearchState.player(moves[i]) == p) expected.add(moves[i]);
+                List<Integer> filtered = new ArrayList<>();
+                int n = state.movesIgnoringDetectives(p, ignoring);
+                for (int i = 0; i < n; i++) {
+                    if (!state.isOccupied(SearchState.destination1(ignoring[i]))) filtered.add(ignoring[i]);
+                }
+                assert(filtered.equals(expected));
+            }
+            state.make(moves[random.nextInt(count)]);
+        }
+    }
+
+    @Test public void convertsBackToGameState() throws IOException {
+        Board.GameState expected = start(3, 5);
+        Board.GameState converted = SearchState.from(expected).toGameState();
+        assert(converted.getAvailableMoves().equals(expected.getAvailableMoves()));
+        assert(converted.getPlayers().equals(expected.getPlayers()));
+    }
+
+    @Test public void scoreMatchesBoardScore() throws IOException {
+        TransportDistances distances = TransportDistances.standard();
+        Random random = new Random(7);
+        Board.GameState expected = start(7, 5);
+        SearchState state = SearchState.from(expected);
+        while (expected.getWinner().isEmpty()) {
+            if (state.isMrXTurn()) {
+                MyGameState converted = MyGameState.convert(expected);
+                assert(new Score().score(converted, distances, state.mrXLocation()) == new Score().score(state, distances));
+            }
+            List<Move> moves = expected.getAvailableMoves().asList();
+            Move move = moves.get(random.nextInt(moves.size()));
+            state.make(state.encode(move));
+            expected = expected.advance(move);
+        }
+    }
+
+    // Edges with three transports give four moves each with secret, the buffers are sized for that
+    @Test public void movesFitOnEdgesWithThreeTransports() {
+        MutableValueGraph<Integer, ImmutableSet<ScotlandYard.Transport>> graph = ValueGraphBuilder.undirected().build();
+        ImmutableSet<ScotlandYard.Transport> all = ImmutableSet.of(ScotlandYard.Transport.TAXI,
+                ScotlandYard.Transport.BUS, ScotlandYard.Transport.UNDERGROUND);
+        for (int node = 2; node <= 5; node++) graph.putEdgeValue(1, node, all);
+        graph.putEdgeValue(5, 6, ImmutableSet.of(ScotlandYard.Transport.TAXI));
+        GameSetup setup = new GameSetup(ImmutableValueGraph.copyOf(graph), ScotlandYard.STANDARD24MOVES.asList());
+        Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), 1);
+        Player blue = new Player(Piece.Detective.BLUE, ScotlandYard.defaultDetectiveTickets(), 6);
+        Board.GameState board = new MyGameStateFactory().build(setup, mrX, ImmutableList.of(blue));
+        SearchState state = SearchState.from(board);
+        assert(state.maxSingleMoves() >= 16);
+        assert(moves(state).equals(board.getAvailableMoves()));
+    }
+
+    @Test public void streamsMovesInOrderAndStopsEarly() throws IOException {
+        SearchState state = SearchState.from(start(2, 5));
+        int[] moves = new int[state.maxMoves()];
+        int count = state.availableMoves(moves);
+        int[] seen = {0};
+        assert(state.forEachMove(move -> moves[seen[0]++] == move));
+        assert(seen[0] == count);
+        seen[0] = 0;
+        assert(!state.forEachMove(move -> ++seen[0] < 5));
+        assert(seen[0] == 5);
+    }
+}
@@ -0,0 +1,60 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import io.atlassian.fugue.Pair;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+public class SelfPlayTest {
+
+    // Plays the first available move, after sleeping for delay milliseconds
+    private static Ai first(long delay) {
+        return new Ai() {
+            @Nonnull @Override public String name() { return "first"; }
+
+            @Nonnull @Override public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return board.getAvailableMoves().iterator().next();
+            }
+        };
+    }
+
+    @Test public void playAllReturnsGamesInSeedOrder() {
+        SelfPlay selfPlay = new SelfPlay(() -> first(0), TheFakeSlimShady::new, 1000);
+        List<SelfPlay.Game> games = selfPlay.playAll(3, 5, 2);
+        assert(games.size() == 3);
+        // The fake detectives report their searches, the test Mr X only its time
+        Metrics metrics = selfPlay.metrics();
+        assert(metrics.names().contains("detectives.nodes") && metrics.names().contains("mrX.nanos"));
+        assert(!metrics.names().contains("mrX.nodes"));
+        int detectiveMoves = games.stream().mapToInt(g -> g.detectiveNanos.length).sum();
+        assert(metrics.histogram("detectives.depth").count() == detectiveMoves);
+        for (int i = 0; i < games.size(); i++) {
+            SelfPlay.Game game = games.get(i);
+            assert(game.seed == 5 + i);
+            assert(!game.timedOut);
+            assert(game.rounds >= 1 && game.rounds <= 24);
+            assert(game.mrXNanos.length > 0 && game.mrXNanos.length <= game.rounds);
+            assert(game.detectiveNanos.length > 0);
+            // Both AIs are deterministic, so the game is too
+            SelfPlay.Game again = selfPlay.play(game.seed);
+            assert(again.rounds == game.rounds && again.mrXWon == game.mrXWon);
+        }
+        assert(SelfPlay.report(games).startsWith("games 3,"));
+    }
+
+    @Test public void slowMoveLosesOnTime() {
+        SelfPlay.Game game = new SelfPlay(() -> first(50), TheFakeSlimShady::new, 10).play(1);
+        assert(game.timedOut);
+        assert(!game.mrXWon);
+        assert(game.rounds == 0);
+        assert(game.mrXNanos.length == 1);
+    }
+}
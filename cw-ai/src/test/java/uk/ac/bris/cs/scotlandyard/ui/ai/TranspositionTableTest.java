@@ -0,0 +1,45 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+public class TranspositionTableTest {
+
+    @Test public void storesAndProbesEntries() {
+        TranspositionTable table = new TranspositionTable(1024);
+        assert(table.probe(42) == 0);
+        table.store(42, 3, TranspositionTable.LOWER, -1234, SearchState.singleMove(1, 0, 67));
+        long entry = table.probe(42);
+        assert(entry != 0);
+        assert(TranspositionTable.depth(entry) == 3);
+        assert(TranspositionTable.bound(entry) == TranspositionTable.LOWER);
+        assert(TranspositionTable.score(entry) == -1234);
+        assert(TranspositionTable.move(entry) == SearchState.singleMove(1, 0, 67));
+        // Another key in the same bucket doesn't match
+        assert(table.probe(42 + (1L << 40)) == 0);
+    }
+
+    @Test public void keepsNoMoveAndClampsScores() {
+        TranspositionTable table = new TranspositionTable(16);
+        table.store(7, 1, TranspositionTable.EXACT, Integer.MIN_VALUE, Minimax.NO_MOVE);
+        long entry = table.probe(7);
+        assert(TranspositionTable.move(entry) == Minimax.NO_MOVE);
+        assert(TranspositionTable.score(entry) == Short.MIN_VALUE);
+    }
+
+    @Test public void keepsDeeperEntryWithinASearch() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.nextGeneration();
+        table.store(1, 5, TranspositionTable.EXACT, 10, Minimax.NO_MOVE);
+        table.store(2, 2, TranspositionTable.EXACT, 20, Minimax.NO_MOVE);
+        table.store(3, 1, TranspositionTable.EXACT, 30, Minimax.NO_MOVE);
+        // The deep entry stays, the shallow ones share the other slot
+        assert(TranspositionTable.score(table.probe(1)) == 10);
+        assert(table.probe(2) == 0);
+        assert(TranspositionTable.score(table.probe(3)) == 30);
+        // The next search replaces it
+        table.nextGeneration();
+        table.store(4, 1, TranspositionTable.EXACT, 40, Minimax.NO_MOVE);
+        assert(table.probe(1) == 0);
+        assert(TranspositionTable.score(table.probe(4)) == 40);
+    }
+}
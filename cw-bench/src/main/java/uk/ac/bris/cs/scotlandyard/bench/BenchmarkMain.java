@@ -0,0 +1,26 @@
+package uk.ac.bris.cs.scotlandyard.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark, or those matching the regex given as the first argument, with the
+ * allocation profiler on, and writes the results to {@code target/jmh-result.json}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json");
+        options.include(args.length > 0 ? args[0] : "uk\\.ac\\.bris\\.cs\\.scotlandyard\\..*Benchmark");
+        new Runner(options.build()).run();
+    }
+}
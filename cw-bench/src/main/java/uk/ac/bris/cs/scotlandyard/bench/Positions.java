@@ -0,0 +1,66 @@
+package uk.ac.bris.cs.scotlandyard.bench;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import uk.ac.bris.cs.scotlandyard.model.*;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Fixed game positions for the benchmarks, the same for every run of the same seed.
+ * Games start from the standard locations drawn with the seed, and mid-game positions are reached
+ * by playing random moves from a {@link Random} with that seed.
+ */
+public final class Positions {
+
+    public static final int SEED = 7;
+    public static final int DETECTIVES = 5;
+
+    private Positions() {}
+
+    public static GameSetup standardSetup() {
+        try {
+            return new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24MOVES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Player mrX(int seed, boolean doubles) {
+        Map<Ticket, Integer> tickets = new EnumMap<>(ScotlandYard.defaultMrXTickets());
+        if (!doubles) tickets.put(Ticket.DOUBLE, 0);
+        return new Player(Piece.MrX.MRX, ImmutableMap.copyOf(tickets), ScotlandYard.generateMrXLocation(seed));
+    }
+
+    public static ImmutableList<Player> detectives(int seed, int count) {
+        List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, count);
+        List<Player> detectives = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            detectives.add(new Player(Piece.Detective.values()[i], ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+        }
+        return ImmutableList.copyOf(detectives);
+    }
+
+    public static Board.GameState start(int seed, boolean doubles) {
+        return new MyGameStateFactory().build(standardSetup(), mrX(seed, doubles), detectives(seed, DETECTIVES));
+    }
+
+    // Plays random moves from the start until it is Mr X's turn after the given number of rounds
+    public static Board.GameState midgame(int seed, int rounds) {
+        Random random = new Random(seed);
+        Board.GameState state = start(seed, true);
+        while (state.getMrXTravelLog().size() < rounds || !isMrXTurn(state)) {
+            if (!state.getWinner().isEmpty()) throw new IllegalStateException("game over before round " + rounds);
+            List<Move> moves = state.getAvailableMoves().asList();
+            state = state.advance(moves.get(random.nextInt(moves.size())));
+        }
+        return state;
+    }
+
+    public static boolean isMrXTurn(Board state) {
+        return state.getAvailableMoves().stream().anyMatch(m -> m.commencedBy().isMrX());
+    }
+}
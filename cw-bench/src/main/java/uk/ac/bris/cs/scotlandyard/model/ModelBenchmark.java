@@ -0,0 +1,82 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.bris.cs.scotlandyard.bench.Positions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game state building, move generation and advancing, on fixed positions from {@link Positions}.
+ * Generation is measured with and without Mr X's double moves, which are most of his moves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ModelBenchmark {
+
+    private GameSetup setup;
+    private Player mrX;
+    private ImmutableList<Player> detectives;
+    // Mr X to move; states are never asked for their move set, so generation isn't memoized
+    private Board.GameState withDoubles;
+    private Board.GameState withoutDoubles;
+    private Board.GameState midgame;
+    private Move move;
+
+    @Setup
+    public void setup() {
+        setup = Positions.standardSetup();
+        mrX = Positions.mrX(Positions.SEED, true);
+        detectives = Positions.detectives(Positions.SEED, Positions.DETECTIVES);
+        withDoubles = new MyGameStateFactory().build(setup, mrX, detectives);
+        withoutDoubles = new MyGameStateFactory().build(setup, Positions.mrX(Positions.SEED, false), detectives);
+        midgame = Positions.midgame(Positions.SEED, 6);
+        move = midgame.getAvailableMoves().asList().get(0);
+    }
+
+    @Benchmark
+    public Board.GameState build() {
+        return new MyGameStateFactory().build(setup, mrX, detectives);
+    }
+
+    @Benchmark
+    public int mrXMoves() {
+        return count(withDoubles);
+    }
+
+    @Benchmark
+    public int mrXSingleMoves() {
+        return count(withoutDoubles);
+    }
+
+    // Includes building the move set, as a caller seeing a new state would
+    @Benchmark
+    public int buildAndGetAvailableMoves() {
+        return new MyGameStateFactory().build(setup, mrX, detectives).getAvailableMoves().size();
+    }
+
+    @Benchmark
+    public Board.GameState advance() {
+        return midgame.advance(move);
+    }
+
+    @Benchmark
+    public void advanceAndGenerate(Blackhole blackhole) {
+        Board.GameState next = midgame.advance(move);
+        blackhole.consume(count(next));
+    }
+
+    private static int count(Board.GameState state) {
+        int[] count = {0};
+        state.forEachAvailableMove(m -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,69 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.bris.cs.scotlandyard.bench.Positions;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AI's precomputation, evaluation and search, on the same position every run.
+ * The search runs to a fixed depth on one thread with a fresh table, pickMove itself stops on a
+ * deadline so its work depends on the machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class AiBenchmark {
+
+    @Param({"3"})
+    public int depth;
+
+    private Board.GameState board;
+    private MyGameState converted;
+    private int mrXLocation;
+    private CompactGraph graph;
+    private TransportDistances distances;
+    private SearchState state;
+    private final Score score = new Score();
+
+    @Setup
+    public void setup() {
+        board = Positions.midgame(Positions.SEED, 6);
+        converted = MyGameState.convert(board);
+        mrXLocation = score.getMrXLocation(converted);
+        graph = CompactGraph.of(board.getSetup().graph);
+        distances = TransportDistances.standard();
+        state = SearchState.from(board);
+    }
+
+    // Every shortest path over every transport, as done once when there is no distance file
+    @Benchmark
+    public byte[] allDistances() {
+        return new Distances().allDistances(graph, CompactGraph.ALL_TRANSPORTS);
+    }
+
+    @Benchmark
+    public int scoreBoard() {
+        return score.score(converted, distances, mrXLocation);
+    }
+
+    @Benchmark
+    public int scoreSearchState() {
+        return score.score(state, distances);
+    }
+
+    @Benchmark
+    public SearchState searchStateFrom() {
+        return SearchState.from(board);
+    }
+
+    @Benchmark
+    public int search() {
+        ParallelSearch search = new ParallelSearch(state, distances, new TranspositionTable(1 << 16), Long.MAX_VALUE, null);
+        return search.search(depth);
+    }
+}
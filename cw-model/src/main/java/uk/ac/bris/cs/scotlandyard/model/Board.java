@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
 
@@ -59,6 +60,21 @@ public interface Board {
 	 */
 	@Nonnull ImmutableSet<Move> getAvailableMoves();
 
+	/**
+	 * Passes the current available moves to the given action one at a time, in the same order
+	 * as {@link #getAvailableMoves()}, stopping as soon as the action returns false.
+	 * Implementations may generate moves on the fly without building the whole set.
+	 *
+	 * @param action the action to apply to each move; returns false to stop
+	 * @return true if every move was visited, false if the action stopped early
+	 */
+	default boolean forEachAvailableMove(@Nonnull Predicate<? super Move> action) {
+		for (Move move : getAvailableMoves()) {
+			if (!action.test(move)) return false;
+		}
+		return true;
+	}
+
 
 	/**
 	 * Represents an on-going ScotlandYard game where moves by each player advances the game.
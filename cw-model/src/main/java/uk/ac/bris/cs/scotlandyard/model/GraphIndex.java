@@ -0,0 +1,124 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Adjacency of a game graph by transport and by ticket, built once per graph.
+ * Neighbours are available as ascending int arrays and as {@code long[]} bitsets over the nodes
+ * (bit {@code n % 64} of word {@code n / 64} is node {@code n}), so the destinations a ticket
+ * reaches from a node, minus the nodes detectives are on, is a few bitwise ops with no lookups in
+ * the graph itself. The arrays returned are shared and must not be modified.
+ */
+public final class GraphIndex {
+	private static final Transport[] TRANSPORTS = Transport.values();
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	// Graphs are compared by identity, and dropped with the graph
+	private static final LoadingCache<ImmutableValueGraph<Integer, ImmutableSet<Transport>>, GraphIndex> INDEXES =
+			CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(GraphIndex::new));
+
+	private final int size;
+	private final int words;
+	// [transport][node], nodes one edge of that transport away
+	private final int[][][] neighbours;
+	private final long[][][] transportBits;
+	// [ticket][node], nodes one move with that ticket away; secret goes anywhere, double nowhere
+	private final long[][][] ticketBits;
+
+	private GraphIndex(ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		size = graph.nodes().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+		words = (size + 63) / 64;
+		neighbours = new int[TRANSPORTS.length][size][];
+		transportBits = new long[TRANSPORTS.length][size][words];
+		ticketBits = new long[TICKETS.length][size][words];
+		for (int node = 0; node < size; node++) {
+			int[] counts = new int[TRANSPORTS.length];
+			int[][] targets = new int[TRANSPORTS.length][graph.nodes().contains(node) ? graph.degree(node) : 0];
+			if (graph.nodes().contains(node)) {
+				for (int adj : new TreeSet<>(graph.adjacentNodes(node))) {
+					for (Transport t : graph.edgeValueOrDefault(node, adj, ImmutableSet.of())) {
+						targets[t.ordinal()][counts[t.ordinal()]++] = adj;
+						set(transportBits[t.ordinal()][node], adj);
+						set(ticketBits[t.requiredTicket().ordinal()][node], adj);
+					}
+					set(ticketBits[Ticket.SECRET.ordinal()][node], adj);
+				}
+			}
+			for (Transport t : TRANSPORTS) neighbours[t.ordinal()][node] = Arrays.copyOf(targets[t.ordinal()], counts[t.ordinal()]);
+		}
+	}
+
+	/**
+	 * @param graph the game graph
+	 * @return the shared index of the given graph
+	 */
+	@Nonnull public static GraphIndex of(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		return INDEXES.getUnchecked(graph);
+	}
+
+	/**
+	 * @return the largest node + 1; node bitsets cover [0, size)
+	 */
+	public int size() { return size; }
+
+	/**
+	 * @return the number of longs in a node bitset
+	 */
+	public int words() { return words; }
+
+	/**
+	 * @return the nodes one edge of the given transport away from node, ascending
+	 */
+	@Nonnull public int[] neighbours(@Nonnull Transport transport, int node) {
+		return neighbours[transport.ordinal()][node];
+	}
+
+	/**
+	 * @return the bitset of nodes one edge of the given transport away from node
+	 */
+	@Nonnull public long[] adjacency(@Nonnull Transport transport, int node) {
+		return transportBits[transport.ordinal()][node];
+	}
+
+	/**
+	 * @return the bitset of nodes one move with the given ticket away from node
+	 */
+	@Nonnull public long[] adjacency(@Nonnull Ticket ticket, int node) {
+		return ticketBits[ticket.ordinal()][node];
+	}
+
+	/**
+	 * @param players the players whose locations to set
+	 * @return a new bitset with the location of every given player set
+	 */
+	@Nonnull public long[] occupancy(@Nonnull Iterable<Player> players) {
+		long[] bits = new long[words];
+		for (Player player : players) {
+			if (player.location() >= 0 && player.location() < size) set(bits, player.location());
+		}
+		return bits;
+	}
+
+	/**
+	 * @return whether node is set in the bitset
+	 */
+	public static boolean contains(@Nonnull long[] bits, int node) {
+		return (bits[node >>> 6] & 1L << node) != 0;
+	}
+
+	private static void set(long[] bits, int node) {
+		bits[node >>> 6] |= 1L << node;
+	}
+}
@@ -0,0 +1,221 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Every move that can be made on a game graph, built once per graph.
+ * Hands out one canonical {@link Move} instance per (piece, source, tickets, destinations) so move
+ * generation doesn't allocate, and numbers the moves densely from 0 so they can be stored as ints.
+ */
+public final class MoveTable {
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final int PIECES = Detective.values().length + 1;
+
+	// Graphs are compared by identity, and dropped with the graph
+	private static final LoadingCache<ImmutableValueGraph<Integer, ImmutableSet<Transport>>, MoveTable> TABLES =
+			CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(MoveTable::new));
+
+	// Neighbours of node n are targets[offsets[n]] up to targets[offsets[n + 1] - 1], ascending
+	private final int[] offsets;
+	private final int[] targets;
+	// Entries used in targets; fewer than its length if the graph has self-loops
+	private final int edges;
+	// Single moves at ((piece * edges + edge) * tickets + ticket), null if the ticket can't be used
+	private final SingleMove[] singles;
+	// Mr X's double moves at doubleOffsets[first edge] + ((second edge index * tickets + ticket1) * tickets + ticket2)
+	private final int[] doubleOffsets;
+	private final DoubleMove[] doubles;
+	// Every move by id, and the id of every entry in singles and doubles
+	private final Move[] moves;
+	private final int[] singleIds;
+	private final int[] doubleIds;
+
+	private MoveTable(ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		int size = graph.nodes().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+		offsets = new int[size + 1];
+		targets = new int[graph.edges().size() * 2];
+		int[] usable = new int[targets.length];
+		int edge = 0;
+		for (int node = 0; node < size; node++) {
+			offsets[node] = edge;
+			if (!graph.nodes().contains(node)) continue;
+			for (int adj : new TreeSet<>(graph.adjacentNodes(node))) {
+				targets[edge] = adj;
+				for (Transport t : graph.edgeValueOrDefault(node, adj, ImmutableSet.of()))
+					usable[edge] |= 1 << t.requiredTicket().ordinal();
+				edge++;
+			}
+		}
+		offsets[size] = edge;
+		edges = edge;
+
+		List<Move> all = new ArrayList<>();
+		singles = new SingleMove[PIECES * edges * TICKETS.length];
+		singleIds = new int[singles.length];
+		for (int piece = 0; piece < PIECES; piece++) {
+			Piece p = piece(piece);
+			for (int source = 0; source < size; source++) {
+				for (int e = offsets[source]; e < offsets[source + 1]; e++) {
+					int tickets = tickets(p, usable[e]);
+					for (Ticket t : TICKETS) {
+						if ((tickets & 1 << t.ordinal()) == 0) continue;
+						int index = (piece * edges + e) * TICKETS.length + t.ordinal();
+						singles[index] = new SingleMove(p, source, t, targets[e]);
+						singleIds[index] = all.size();
+						all.add(singles[index]);
+					}
+				}
+			}
+		}
+
+		doubleOffsets = new int[edges + 1];
+		for (int e = 0; e < edges; e++) {
+			int middle = targets[e];
+			doubleOffsets[e + 1] = doubleOffsets[e] + (offsets[middle + 1] - offsets[middle]) * TICKETS.length * TICKETS.length;
+		}
+		doubles = new DoubleMove[doubleOffsets[edges]];
+		doubleIds = new int[doubles.length];
+		for (int source = 0; source < size; source++) {
+			for (int e1 = offsets[source]; e1 < offsets[source + 1]; e1++) {
+				int middle = targets[e1];
+				int tickets1 = tickets(Piece.MrX.MRX, usable[e1]);
+				for (int e2 = offsets[middle]; e2 < offsets[middle + 1]; e2++) {
+					int tickets2 = tickets(Piece.MrX.MRX, usable[e2]);
+					for (Ticket t1 : TICKETS) {
+						if ((tickets1 & 1 << t1.ordinal()) == 0) continue;
+						for (Ticket t2 : TICKETS) {
+							if ((tickets2 & 1 << t2.ordinal()) == 0) continue;
+							int index = doubleIndex(e1, e2 - offsets[middle], t1, t2);
+							doubles[index] = new DoubleMove(Piece.MrX.MRX, source, t1, middle, t2, targets[e2]);
+							doubleIds[index] = all.size();
+							all.add(doubles[index]);
+						}
+					}
+				}
+			}
+		}
+		moves = all.toArray(new Move[0]);
+	}
+
+	/**
+	 * @param graph the game graph
+	 * @return the shared move table of the given graph
+	 */
+	@Nonnull public static MoveTable of(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		return TABLES.getUnchecked(graph);
+	}
+
+	/**
+	 * @return the number of moves in this table; ids are in [0, size)
+	 */
+	public int size() { return moves.length; }
+
+	/**
+	 * @param id the move id
+	 * @return the move with the given id
+	 */
+	@Nonnull public Move move(int id) { return moves[id]; }
+
+	/**
+	 * @return the canonical single move
+	 * @throws IllegalArgumentException if the move can't be made on this graph
+	 */
+	@Nonnull public SingleMove single(@Nonnull Piece piece, int source, @Nonnull Ticket ticket, int destination) {
+		int index = singleIndex(piece, source, ticket, destination);
+		if (index < 0) throw new IllegalArgumentException("Not on graph: " + new SingleMove(piece, source, ticket, destination));
+		return singles[index];
+	}
+
+	/**
+	 * @return the canonical double move
+	 * @throws IllegalArgumentException if the move can't be made on this graph
+	 */
+	@Nonnull public DoubleMove doubleMove(@Nonnull Piece piece, int source,
+	                                      @Nonnull Ticket ticket1, int destination1,
+	                                      @Nonnull Ticket ticket2, int destination2) {
+		int index = doubleIndex(piece, source, ticket1, destination1, ticket2, destination2);
+		if (index < 0) throw new IllegalArgumentException("Not on graph: " +
+				new DoubleMove(piece, source, ticket1, destination1, ticket2, destination2));
+		return doubles[index];
+	}
+
+	/**
+	 * @param move any move, canonical or not
+	 * @return the id of the move, or -1 if it can't be made on this graph
+	 */
+	public int id(@Nonnull Move move) {
+		return move.accept(new Move.Visitor<Integer>() {
+			@Override public Integer visit(SingleMove m) {
+				int index = singleIndex(m.commencedBy(), m.source(), m.ticket, m.destination);
+				return index < 0 ? -1 : singleIds[index];
+			}
+			@Override public Integer visit(DoubleMove m) {
+				int index = doubleIndex(m.commencedBy(), m.source(), m.ticket1, m.destination1, m.ticket2, m.destination2);
+				return index < 0 ? -1 : doubleIds[index];
+			}
+		});
+	}
+
+	private int singleIndex(Piece piece, int source, Ticket ticket, int destination) {
+		int e = edge(source, destination);
+		if (e < 0) return -1;
+		int index = (pieceIndex(piece) * edges + e) * TICKETS.length + ticket.ordinal();
+		return singles[index] == null ? -1 : index;
+	}
+
+	private int doubleIndex(Piece piece, int source, Ticket ticket1, int destination1, Ticket ticket2, int destination2) {
+		if (!piece.isMrX()) return -1;
+		int e1 = edge(source, destination1);
+		int e2 = edge(destination1, destination2);
+		if (e1 < 0 || e2 < 0) return -1;
+		int index = doubleIndex(e1, e2 - offsets[destination1], ticket1, ticket2);
+		return doubles[index] == null ? -1 : index;
+	}
+
+	private int doubleIndex(int e1, int second, Ticket ticket1, Ticket ticket2) {
+		return doubleOffsets[e1] + (second * TICKETS.length + ticket1.ordinal()) * TICKETS.length + ticket2.ordinal();
+	}
+
+	// Returns the edge from source to destination, or -1 if there isn't one
+	private int edge(int source, int destination) {
+		if (source < 0 || source >= offsets.length - 1) return -1;
+		int low = offsets[source], high = offsets[source + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (targets[mid] < destination) low = mid + 1;
+			else if (targets[mid] > destination) high = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	// Tickets a piece can use along an edge: those its transports need, and secret for MrX
+	private static int tickets(Piece piece, int usable) {
+		if (piece.isDetective()) return usable & ~(1 << Ticket.SECRET.ordinal());
+		return usable | 1 << Ticket.SECRET.ordinal();
+	}
+
+	private static int pieceIndex(Piece piece) {
+		return piece.isMrX() ? 0 : ((Detective) piece).ordinal() + 1;
+	}
+
+	private static Piece piece(int index) {
+		return index == 0 ? Piece.MrX.MRX : Detective.values()[index - 1];
+	}
+}
@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
@@ -21,6 +22,11 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		return new MyGameState(setup, ImmutableSet.of(MrX.MRX), ImmutableList.of(), mrX, detectives);
 	}
 
+	// Tickets that move a piece along one edge, in the order moves are offered
+	private static final Ticket[] MOVE_TICKETS = {Ticket.TAXI, Ticket.BUS, Ticket.UNDERGROUND, Ticket.SECRET};
+	// Tickets of a transport, secret excluded
+	private static final Ticket[] SINGLE_TICKETS = {Ticket.TAXI, Ticket.BUS, Ticket.UNDERGROUND};
+
 	// MyGameState is hidden class of MyGameStateFactory instantiated in build.
 	private final class MyGameState implements GameState {
 
@@ -30,7 +36,10 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		final private Player mrX;
 		final private List<Player> detectives;
 		final private Set<Player> players;
-		private ImmutableSet<Move> moves; //not final -> getWinner can edit this
+		final private MoveTable moveTable;
+		final private GraphIndex index;
+		final private long[] occupied; //bitset of detective locations, see GraphIndex
+		private ImmutableSet<Move> moves; //not final -> built lazily on first getAvailableMoves
 		private ImmutableSet<Piece> winner; //not final -> winnerChecks can edit this
 
 		// MyGameState constructor initialises declared attributes from above
@@ -52,8 +61,8 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			// Detectives error checks
 			for (Player detective : detectives) {
 				if (detective.isMrX()) throw new IllegalArgumentException("many mrX");
-				if (detective.tickets().get(Ticket.DOUBLE) > 0) throw new IllegalArgumentException("illegal double ticket");
-				if (detective.tickets().get(Ticket.SECRET) > 0) throw new IllegalArgumentException("illegal secret ticket");
+				if (detective.has(Ticket.DOUBLE)) throw new IllegalArgumentException("illegal double ticket");
+				if (detective.has(Ticket.SECRET)) throw new IllegalArgumentException("illegal secret ticket");
 			}
 			if (detectives.stream().map(Player::piece).distinct().count() != detectives.size()) {
 				throw new IllegalArgumentException("identical pieces");
@@ -74,15 +83,12 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			tempPlayers.add(mrX);
 			players = ImmutableSet.copyOf(tempPlayers);
 
-			// Moves checks
-			Set<Move> tempMoves = new HashSet<>();
-			for (Player player : players) {
-				if (remaining.contains(player.piece())) tempMoves.addAll(makeMoves(setup, detectives, player, player.location()));
-			}
-			if (remaining.contains(mrX.piece())) tempMoves.addAll(makeMoves(setup, detectives, mrX, mrX.location(), log));
-			this.moves = ImmutableSet.copyOf(tempMoves);
+			// Shared canonical moves and adjacency bitsets of this graph
+			this.moveTable = MoveTable.of(setup.graph);
+			this.index = GraphIndex.of(setup.graph);
+			this.occupied = index.occupancy(detectives);
 
-			// Winner checks
+			// Winner checks, moves are only generated once asked for
 			this.winner = ImmutableSet.of();
 			if (isWinner(Detective.BLUE) || isStuck(MrX.MRX)) {
 				this.winner = ImmutableSet.copyOf(detectives.stream().map(Player::piece).collect(Collectors.toSet()));
@@ -108,60 +114,67 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		// True if all detectives have no tickets
 		private boolean isStuck(Detective p) {
 			for (Player det : this.detectives) {
-				if (!det.tickets().values().stream().filter(v -> v != 0).collect(Collectors.toSet()).isEmpty())
-					return false;
+				if (hasTickets(det)) return false;
 			}
 			return true;
 		}
 
-		// True if mrX has no available moves
+		// True if mrX has no available moves, he has no double move without a single move
 		private boolean isStuck(MrX p) {
-			if (this.remaining.contains(p)) {
-				return (this.moves.stream().filter(x -> x.commencedBy().isMrX()).collect(Collectors.toSet()).isEmpty());
-			}
+			if (this.remaining.contains(p)) return !hasMove(index, occupied, mrX, mrX.location());
 			return false;
 		}
 
-		// True if there is a detective at the entered location
-		private static boolean isDetectiveThere(int destination, List<Player> detectives) {
-			for (Player detective : detectives) if (detective.location() == destination) return true;
+		// True if the player has any ticket left
+		private static boolean hasTickets(Player player) {
+			for (Ticket t : Ticket.values()) if (player.has(t)) return true;
 			return false;
 		}
 
-		// Returns set of SingleMoves that the player can take
-		private static Set<SingleMove> makeMoves(GameSetup setup, List<Player> detectives, Player player, int source){
-			Set<SingleMove> SingleMoves = new HashSet();
-			// For each unoccupied adjacent node, find valid moves
-			for(int destination : setup.graph.adjacentNodes(source)) {
-				if (!isDetectiveThere(destination, detectives) ) {
-					for (Transport t : setup.graph.edgeValueOrDefault(source, destination, ImmutableSet.of())) {
-						//  Find out if the player has the required tickets
-						if (player.isMrX() && (player.tickets().get(Ticket.SECRET) > 0)) SingleMoves.add(new SingleMove(player.piece(), source, Ticket.SECRET, destination));
-						if (player.tickets().get(t.requiredTicket()) > 0) SingleMoves.add(new SingleMove(player.piece(), source, t.requiredTicket(), destination));
-					}
-				}
+		// Bitset of the nodes the player has a ticket to reach from source, including occupied ones
+		private static long destinations(GraphIndex index, Player player, int source, int word) {
+			long bits = 0;
+			for (Ticket t : SINGLE_TICKETS) {
+				if (player.has(t)) bits |= index.adjacency(t, source)[word];
 			}
-			return SingleMoves;
+			if (player.isMrX() && player.has(Ticket.SECRET)) bits |= index.adjacency(Ticket.SECRET, source)[word];
+			return bits;
 		}
 
-		// Returns a set of DoubleMoves that the player can take (MrX only)
-		private static Set<DoubleMove> makeMoves(GameSetup setup, List<Player> detectives, Player player, int source, ImmutableList<LogEntry> log) {
-			Set<DoubleMove> doubleMoves = new HashSet<>();
-			// ensure valid player, ticket and it is not the last move of the game
-			if (player.has(Ticket.DOUBLE) && player.isMrX() && (log.size() < setup.moves.size() - 1)) {
-				Set<SingleMove> firstMoves = makeMoves(setup, detectives, player, source);
-				for (SingleMove first : firstMoves) {
-					Set<SingleMove> secondMoves = makeMoves(setup, detectives, player, first.destination)
-							.stream()
-							.filter(m -> (m.ticket != first.ticket || player.tickets().get(m.ticket) > 1))
-							.collect(Collectors.toSet());
-					// combine first and second SingleMove into a unified DoubleMove
-					for (SingleMove second : secondMoves) {
-						doubleMoves.add(new DoubleMove(player.piece(), source, first.ticket, first.destination, second.ticket, second.destination));
+		// True if the player has at least one SingleMove, stops at the first one found
+		private static boolean hasMove(GraphIndex index, long[] occupied, Player player, int source) {
+			for (int w = 0; w < index.words(); w++) {
+				if ((destinations(index, player, source, w) & ~occupied[w]) != 0) return true;
+			}
+			return false;
+		}
+
+		// Streams the SingleMoves the player can take to action, by destination then ticket, false if stopped early
+		private static boolean forEachMove(GraphIndex index, long[] occupied, MoveTable table, Player player, int source, Predicate<? super SingleMove> action) {
+			// Unoccupied nodes reachable with any held ticket, ascending
+			for (int w = 0; w < index.words(); w++) {
+				for (long bits = destinations(index, player, source, w) & ~occupied[w]; bits != 0; bits &= bits - 1) {
+					int destination = w * 64 + Long.numberOfTrailingZeros(bits);
+					// Offer each held ticket that reaches the destination once
+					for (Ticket ticket : MOVE_TICKETS) {
+						if (ticket == Ticket.SECRET && !player.isMrX()) continue;
+						if (!player.has(ticket) || !GraphIndex.contains(index.adjacency(ticket, source), destination)) continue;
+						if (!action.test(table.single(player.piece(), source, ticket, destination))) return false;
 					}
 				}
 			}
-			return doubleMoves;
+			return true;
+		}
+
+		// Streams the DoubleMoves that the player can take (MrX only) to action, false if stopped early
+		private static boolean forEachMove(GameSetup setup, GraphIndex index, long[] occupied, MoveTable table, Player player, int source, ImmutableList<LogEntry> log, Predicate<? super DoubleMove> action) {
+			// ensure valid player, ticket and it is not the last move of the game
+			if (!player.has(Ticket.DOUBLE) || !player.isMrX() || log.size() >= setup.moves.size() - 1) return true;
+			// combine first and second SingleMove into a unified DoubleMove
+			return forEachMove(index, occupied, table, player, source, first ->
+					forEachMove(index, occupied, table, player, first.destination, second ->
+							(second.ticket == first.ticket && !player.hasAtLeast(second.ticket, 2))
+									|| action.test(table.doubleMove(player.piece(), source, first.ticket, first.destination, second.ticket, second.destination))));
 		}
 
 		// Getter method that returns the encapsulated setup
@@ -203,11 +216,11 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		public Optional<TicketBoard> getPlayerTickets(Piece piece) {
 			// If mrX get mrX location
 			if (this.mrX.piece() == piece){
-				return Optional.of((ticket) -> this.mrX.tickets().get(ticket));
+				return Optional.of(this.mrX::count);
 			}
 			// Get player location
 			Player det = getPlayer(piece);
-			if (det != null) return Optional.of((ticket) -> det.tickets().get(ticket));
+			if (det != null) return Optional.of(det::count);
 			// Otherwise is empty
 			else return Optional.empty();
 		}
@@ -223,15 +236,45 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		@Nonnull
 		@Override
 		public ImmutableSet<Piece> getWinner() {
-			// Empty moves if winner found
-			if (!this.winner.isEmpty()) this.moves = ImmutableSet.of();
 			return this.winner;
 		}
 
-		// Getter method that returns a set of encapsulated moves
+		// Getter method that returns a set of encapsulated moves, generated on first call and memoized
 		@Nonnull
 		@Override
-		public ImmutableSet<Move> getAvailableMoves() { return this.moves; }
+		public ImmutableSet<Move> getAvailableMoves() {
+			if (this.moves == null) {
+				// No moves if winner found
+				if (!this.winner.isEmpty()) this.moves = ImmutableSet.of();
+				else this.moves = makeMoves();
+			}
+			return this.moves;
+		}
+
+		// Returns every move of the remaining players, in the order they are streamed
+		private ImmutableSet<Move> makeMoves() {
+			ImmutableSet.Builder<Move> tempMoves = ImmutableSet.builder();
+			forEachAvailableMove(move -> {
+				tempMoves.add(move);
+				return true;
+			});
+			return tempMoves.build();
+		}
+
+		// Streams moves of remaining detectives in turn order, then mrX's single and double moves, without building a set
+		@Override
+		public boolean forEachAvailableMove(@Nonnull Predicate<? super Move> action) {
+			// Use the memoized set once it exists, it is in the same order
+			if (this.moves != null || !this.winner.isEmpty()) return GameState.super.forEachAvailableMove(action);
+			for (Player det : this.detectives) {
+				if (remaining.contains(det.piece()) && !forEachMove(index, occupied, moveTable, det, det.location(), action)) return false;
+			}
+			if (remaining.contains(mrX.piece())) {
+				return forEachMove(index, occupied, moveTable, mrX, mrX.location(), action)
+						&& forEachMove(setup, index, occupied, moveTable, mrX, mrX.location(), log, action);
+			}
+			return true;
+		}
 
 		// Helper function that returns a List of log entries handling reveal moves.
 		@Nonnull
@@ -246,7 +289,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		private Set<Piece> stuckRemover(Set<Piece> nextRemaining) {
 			// Remove stuck detectives from remaining
 			for (Player det : this.detectives) {
-				if (det.tickets().values().stream().filter(v -> v != 0).collect(Collectors.toSet()).isEmpty()) {
+				if (!hasTickets(det)) {
 					if (this.remaining.contains(det.piece())) nextRemaining.remove(det.piece());
 				}
 			}
@@ -304,13 +347,33 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			return new MyGameState(this.setup, ImmutableSet.copyOf(nextRemaining), ImmutableList.copyOf(nextLog), nextMrX, nextDetectives);
 		}
 
+		// True if move is one getAvailableMoves would offer, checked directly so advancing doesn't build every move
+		private boolean isAvailable(Move move) {
+			if (!this.winner.isEmpty() || !remaining.contains(move.commencedBy())) return false;
+			Player player = move.commencedBy().isMrX() ? this.mrX : getPlayer(move.commencedBy());
+			if (player == null || move.source() != player.location()) return false;
+			Function<SingleMove, Boolean> single = m -> canTake(player, m.source(), m.ticket, m.destination);
+			// Second ticket the same as the first needs two of it, and the log needs room for both entries
+			Function<DoubleMove, Boolean> twice = m -> player.has(Ticket.DOUBLE) && log.size() < setup.moves.size() - 1
+					&& (m.ticket1 != m.ticket2 || player.hasAtLeast(m.ticket1, 2))
+					&& canTake(player, m.source(), m.ticket1, m.destination1)
+					&& canTake(player, m.destination1, m.ticket2, m.destination2);
+			return move.accept(new FunctionalVisitor<>(single, twice));
+		}
+
+		// True if the player holds the ticket and it takes them from source to an unoccupied destination
+		private boolean canTake(Player player, int source, Ticket ticket, int destination) {
+			if (!player.has(ticket) || source < 0 || source >= index.size() || destination < 0 || destination >= index.size()) return false;
+			return GraphIndex.contains(index.adjacency(ticket, source), destination) && !GraphIndex.contains(occupied, destination);
+		}
+
 		// Returns a new GameState, based on a valid selected move
 		//  Functions are assigned, smf and dmf (single move function, double move function) to overloaded doMove methods
 		// Visitor pattern means functional visitor calls smf/dmf when visit() method called
 		@Nonnull
 		@Override
 		public GameState advance(Move move) {
-			if(!this.moves.contains(move)) throw new IllegalArgumentException("Illegal move: "+move);
+			if(!isAvailable(move)) throw new IllegalArgumentException("Illegal move: "+move);
 			// Functions applied when visited
 			Function<SingleMove, GameState> smf = (this::doMove);
 			Function<DoubleMove, GameState> dmf = (this::doMove);
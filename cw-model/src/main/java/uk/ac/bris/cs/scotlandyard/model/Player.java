@@ -2,7 +2,7 @@ package uk.ac.bris.cs.scotlandyard.model;
 
 import com.google.common.collect.ImmutableMap;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
@@ -14,9 +14,15 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
  * Each player contains the {@link Piece} (coloured counter), {@link Ticket}s, and the location.
  */
 public final class Player {
+	private static final Ticket[] TICKETS = Ticket.values();
+
 	private final Piece piece;
-	private final ImmutableMap<Ticket, Integer> tickets;
+	// Ticket counts indexed by ordinal, and a bitmask of the tickets the map was created with
+	private final int[] counts;
+	private final int present;
 	private final int location;
+	// Map view of counts, built on first use
+	private ImmutableMap<Ticket, Integer> tickets;
 
 	public Player(@Nonnull Piece piece,
 	              @Nonnull ImmutableMap<Ticket, Integer> tickets,
@@ -24,6 +30,21 @@ public final class Player {
 		this.piece = Objects.requireNonNull(piece);
 		this.tickets = Objects.requireNonNull(tickets);
 		this.location = location;
+		this.counts = new int[TICKETS.length];
+		int present = 0;
+		for (var entry : tickets.entrySet()) {
+			counts[entry.getKey().ordinal()] = entry.getValue();
+			present |= 1 << entry.getKey().ordinal();
+		}
+		this.present = present;
+	}
+
+	private Player(Piece piece, int[] counts, int present, int location, ImmutableMap<Ticket, Integer> tickets) {
+		this.piece = piece;
+		this.counts = counts;
+		this.present = present;
+		this.location = location;
+		this.tickets = tickets;
 	}
 	/**
 	 * @return the piece
@@ -40,7 +61,22 @@ public final class Player {
 	/**
 	 * @return the ticket
 	 */
-	@Nonnull public ImmutableMap<Ticket, Integer> tickets() { return tickets; }
+	@Nonnull public ImmutableMap<Ticket, Integer> tickets() {
+		var view = tickets;
+		if (view == null) {
+			var builder = ImmutableMap.<Ticket, Integer>builder();
+			for (Ticket t : TICKETS) {
+				if ((present & 1 << t.ordinal()) != 0) builder.put(t, counts[t.ordinal()]);
+			}
+			tickets = view = builder.build();
+		}
+		return view;
+	}
+	/**
+	 * @param ticket the ticket
+	 * @return the number of the given ticket, 0 if the player has none
+	 */
+	public int count(@Nonnull Ticket ticket) { return counts[ticket.ordinal()]; }
 	/**
 	 * @return the location
 	 */
@@ -50,7 +86,7 @@ public final class Player {
 	 * @return whether the player has the given ticket
 	 */
 	public boolean has(@Nonnull Ticket ticket) {
-		return tickets.getOrDefault(Objects.requireNonNull(ticket), 0) != 0;
+		return counts[Objects.requireNonNull(ticket).ordinal()] != 0;
 	}
 	/**
 	 * @param ticket the ticket
@@ -58,7 +94,7 @@ public final class Player {
 	 * @return whether the player has &gt;= the required numbers of the given ticket
 	 */
 	public boolean hasAtLeast(@Nonnull Ticket ticket, int count) {
-		return tickets.getOrDefault(Objects.requireNonNull(ticket), 0) >= count;
+		return counts[Objects.requireNonNull(ticket).ordinal()] >= count;
 	}
 	/**
 	 * See {@link #give(Ticket)}
@@ -76,9 +112,11 @@ public final class Player {
 	 * @return a new player with one more of the given ticket
 	 */
 	@Nonnull public Player give(@Nonnull Ticket ticket) {
-		var map = new HashMap<>(tickets);
-		map.computeIfPresent(ticket, (t, n) -> n + 1);
-		return new Player(piece, ImmutableMap.copyOf(map), location);
+		// Only tickets the player was created with are counted
+		if ((present & 1 << ticket.ordinal()) == 0) return this;
+		var next = counts.clone();
+		next[ticket.ordinal()]++;
+		return new Player(piece, next, present, location, null);
 	}
 	/**
 	 * See {@link #use(Ticket)}
@@ -98,22 +136,22 @@ public final class Player {
 	@Nonnull public Player use(@Nonnull Ticket ticket) {
 		if (!has(ticket))
 			throw new IllegalArgumentException("No " + ticket + " remaining");
-		var map = new HashMap<>(tickets);
-		map.computeIfPresent(ticket, (t, n) -> n - 1);
-		return new Player(piece, ImmutableMap.copyOf(map), location);
+		var next = counts.clone();
+		next[ticket.ordinal()]--;
+		return new Player(piece, next, present, location, null);
 	}
 	/**
 	 * @param newLocation the location
 	 * @return a new player at the given location
 	 */
-	@Nonnull public Player at(int newLocation) { return new Player(piece, tickets, newLocation); }
+	@Nonnull public Player at(int newLocation) { return new Player(piece, counts, present, newLocation, tickets); }
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		Player that = (Player) o;
 		return location == that.location && piece == that.piece &&
-				Objects.equals(tickets, that.tickets);
+				present == that.present && Arrays.equals(counts, that.counts);
 	}
-	@Override public int hashCode() { return Objects.hash(piece, tickets, location); }
-	@Override public String toString() { return piece + "@" + location + "(" + tickets + ")"; }
+	@Override public int hashCode() { return Objects.hash(piece, present, Arrays.hashCode(counts), location); }
+	@Override public String toString() { return piece + "@" + location + "(" + tickets() + ")"; }
 }
@@ -250,13 +250,13 @@ class MapController implements Controller, GameControl {
 		});
 	}
 
-	Runnable requestHuman(ImmutableSet<Move> moves, Consumer<Move> moveCallback) {
+	Runnable requestHuman(Board board, Consumer<Move> moveCallback) {
 		clearMoveHints();
 		BiFunction<Integer, Integer, MoveHintController> mapping = (source, location) ->
 				new MoveHintController(manager, this,
 						source, location, moveCallback);
-		// attach tickets to hint
-		for (Move move : moves) {
+		// attach tickets to hint, streaming moves so no move set is built
+		board.forEachAvailableMove(move -> {
 			move.accept(new Visitor<Unit>() {
 				@Override public Unit visit(SingleMove move) {
 					hints.computeIfAbsent(move.destination, t -> mapping.apply(move.source(), t)).addMove(move);
@@ -269,11 +269,13 @@ class MapController implements Controller, GameControl {
 					return Unit.VALUE;
 				}
 			});
-		}
+			return true;
+		});
 		hintPane.getChildren().setAll(hints.values().stream()
 				.map(MoveHintController::root)
 				.collect(Collectors.toList()));
-		drawMoveHighlights(moves);
+		// every destination has a hint
+		drawHighlights(hints.keySet());
 		return () -> {};
 	}
 
@@ -297,7 +299,7 @@ class MapController implements Controller, GameControl {
 			terminateAction = requestAi(board, detectiveAi.get());
 		} else {
 			terminateAction = requestHuman(
-					board.getCurrentBoard().getAvailableMoves(), m -> selectAndMove(model, m));
+					board.getCurrentBoard(), m -> selectAndMove(model, m));
 		}
 
 		notifications.show("notify_timeout",
@@ -365,7 +367,10 @@ class MapController implements Controller, GameControl {
 				m -> ImmutableSet.of(m.destination),
 				m -> ImmutableSet.of(m.destination1, m.destination2))).stream())
 				.collect(ImmutableSet.toImmutableSet());
+		drawHighlights(destinations);
+	}
 
+	private void drawHighlights(Collection<Integer> destinations) {
 		for (Integer location : destinations) {
 			Point2D point = manager.coordinateAtNode(location);
 			Circle circle = new Circle(ScotlandYard.MAP_NODE_SIZE);
@@ -15,6 +15,8 @@ import org.junit.runners.Suite;
 		GameStateDetectivesAvailableMovesTest.class,
 		GameStateMrXAvailableMovesTest.class,
 		GameStatePlayoutTest.class,
-		ModelObserverTest.class
+		ModelObserverTest.class,
+		MoveTableTest.class,
+		GraphIndexTest.class
 })
 public class AllTest {}
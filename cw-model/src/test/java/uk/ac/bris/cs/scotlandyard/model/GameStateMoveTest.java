@@ -2,6 +2,10 @@ package uk.ac.bris.cs.scotlandyard.model;
 
 import com.google.common.collect.ImmutableSet;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
 import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
@@ -107,4 +111,42 @@ public class GameStateMoveTest extends ParameterisedModelTestBase {
 				.isInstanceOf(IllegalArgumentException.class);
 	}
 
+	@Test public void testAdvanceAcceptsExactlyTheGivenMoves() {
+		var random = new Random(7);
+		GameState state = gameStateFactory.build(standard24MoveSetup(), blackPlayer(),
+				redPlayer(), greenPlayer(), bluePlayer(), whitePlayer(), yellowPlayer());
+		while (state.getWinner().isEmpty()) {
+			var moves = state.getAvailableMoves();
+			// every ticket to every neighbour, from the mover's location and from one node off, and
+			// for MrX each of those followed by every ticket to every neighbour again
+			List<Move> candidates = new ArrayList<>();
+			for (Move move : moves) {
+				if (move instanceof Move.DoubleMove) continue;
+				for (int source : new int[]{move.source(), move.source() + 1}) {
+					for (int destination : standardGraph().adjacentNodes(move.source())) {
+						for (ScotlandYard.Ticket ticket : ScotlandYard.Ticket.values()) {
+							candidates.add(new Move.SingleMove(move.commencedBy(), source, ticket, destination));
+							if (!move.commencedBy().isMrX() || source != move.source()) continue;
+							for (int destination2 : standardGraph().adjacentNodes(destination)) {
+								for (ScotlandYard.Ticket ticket2 : ScotlandYard.Ticket.values()) {
+									candidates.add(new Move.DoubleMove(MRX, source, ticket, destination, ticket2, destination2));
+								}
+							}
+						}
+					}
+				}
+			}
+			for (Move candidate : candidates) {
+				final GameState current = state;
+				if (moves.contains(candidate)) assertThat(current.advance(candidate)).isNotNull();
+				else assertThatThrownBy(() -> current.advance(candidate))
+						.isInstanceOf(IllegalArgumentException.class);
+			}
+			state = state.advance(moves.asList().get(random.nextInt(moves.size())));
+		}
+		// no moves once the game is over
+		final GameState over = state;
+		assertThatThrownBy(() -> over.advance(taxi(MRX, 1, 8))).isInstanceOf(IllegalArgumentException.class);
+	}
+
 }
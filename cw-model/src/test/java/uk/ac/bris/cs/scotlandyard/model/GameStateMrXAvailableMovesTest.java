@@ -4,6 +4,8 @@ import com.google.common.collect.ImmutableList;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+
 import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -240,5 +242,21 @@ public class GameStateMrXAvailableMovesTest extends ParameterisedModelTestBase {
 				x2(MRX, 104, SECRET, 116, BUS, 127));
 	}
 
+	@Test public void testStreamedMovesMatchAvailableMovesInOrder() {
+		var mrX = new Player(MRX, makeTickets(4, 3, 3, 2, 5), 104);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 116);
+		GameState state = gameStateFactory.build(standard24MoveSetup(), mrX, blue);
+		var streamed = new ArrayList<Move>();
+		assertThat(state.forEachAvailableMove(streamed::add)).isTrue();
+		assertThat(streamed).containsExactlyElementsOf(state.getAvailableMoves());
+	}
 
+	@Test public void testStreamedMovesStopEarly() {
+		var mrX = new Player(MRX, makeTickets(4, 3, 3, 2, 5), 104);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 116);
+		GameState state = gameStateFactory.build(standard24MoveSetup(), mrX, blue);
+		var streamed = new ArrayList<Move>();
+		assertThat(state.forEachAvailableMove(m -> streamed.add(m) && streamed.size() < 3)).isFalse();
+		assertThat(streamed).hasSize(3);
+	}
 }
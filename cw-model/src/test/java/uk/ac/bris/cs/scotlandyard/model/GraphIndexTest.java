@@ -0,0 +1,64 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+
+/**
+ * Tests the adjacency arrays and bitsets of {@link GraphIndex}
+ */
+public class GraphIndexTest extends ParameterisedModelTestBase {
+
+	@Test public void testIndexIsSharedPerGraph() {
+		var graph = standardGraph();
+		assertThat(GraphIndex.of(graph)).isSameAs(GraphIndex.of(graph));
+	}
+
+	@Test public void testNeighboursMatchGraph() {
+		var graph = standardGraph();
+		var index = GraphIndex.of(graph);
+		for (int node : graph.nodes()) {
+			for (Transport t : Transport.values()) {
+				var expected = ImmutableSet.copyOf(graph.adjacentNodes(node).stream()
+						.filter(adj -> graph.edgeValueOrDefault(node, adj, ImmutableSet.of()).contains(t))
+						.sorted().toList());
+				assertThat(index.neighbours(t, node)).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+				for (int adj = 0; adj < index.size(); adj++) {
+					assertThat(GraphIndex.contains(index.adjacency(t, node), adj)).isEqualTo(expected.contains(adj));
+				}
+			}
+		}
+	}
+
+	@Test public void testTicketAdjacency() {
+		var index = GraphIndex.of(standardGraph());
+		// 1 has taxi to 8 and 9, bus to 46 and 58, underground to 46
+		assertThat(GraphIndex.contains(index.adjacency(Ticket.TAXI, 1), 8)).isTrue();
+		assertThat(GraphIndex.contains(index.adjacency(Ticket.TAXI, 1), 46)).isFalse();
+		assertThat(GraphIndex.contains(index.adjacency(Ticket.UNDERGROUND, 1), 46)).isTrue();
+		// Secret goes anywhere adjacent, ferries included
+		assertThat(GraphIndex.contains(index.adjacency(Ticket.SECRET, 194), 157)).isTrue();
+		assertThat(GraphIndex.contains(index.adjacency(Ticket.TAXI, 194), 157)).isFalse();
+		for (long word : index.adjacency(Ticket.DOUBLE, 1)) assertThat(word).isZero();
+	}
+
+	@Test public void testOccupancy() {
+		var index = GraphIndex.of(standardGraph());
+		var bits = index.occupancy(ImmutableList.of(
+				new Player(BLUE, defaultDetectiveTickets(), 128),
+				new Player(RED, defaultDetectiveTickets(), 1)));
+		assertThat(GraphIndex.contains(bits, 128)).isTrue();
+		assertThat(GraphIndex.contains(bits, 1)).isTrue();
+		assertThat(GraphIndex.contains(bits, 2)).isFalse();
+		assertThat(bits).hasSize(index.words());
+	}
+}
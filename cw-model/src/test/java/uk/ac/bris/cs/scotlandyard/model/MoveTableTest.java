@@ -0,0 +1,83 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ValueGraphBuilder;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.UNDERGROUND;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+
+/**
+ * Tests the canonical moves and ids handed out by {@link MoveTable}
+ */
+public class MoveTableTest extends ParameterisedModelTestBase {
+
+	@Test public void testTableIsSharedPerGraph() {
+		var graph = standardGraph();
+		assertThat(MoveTable.of(graph)).isSameAs(MoveTable.of(graph));
+	}
+
+	@Test public void testMovesAreCanonical() {
+		var table = MoveTable.of(standardGraph());
+		assertThat(table.single(MRX, 104, TAXI, 86)).isSameAs(table.single(MRX, 104, TAXI, 86));
+		assertThat(table.doubleMove(MRX, 104, TAXI, 86, BUS, 52))
+				.isSameAs(table.doubleMove(MRX, 104, TAXI, 86, BUS, 52))
+				.isEqualTo(x2(MRX, 104, TAXI, 86, BUS, 52));
+	}
+
+	@Test public void testIdsAreDense() {
+		var table = MoveTable.of(standardGraph());
+		for (int id = 0; id < table.size(); id++) assertThat(table.id(table.move(id))).isEqualTo(id);
+		assertThat(table.id(taxi(BLUE, 1, 8))).isEqualTo(table.id(table.single(BLUE, 1, TAXI, 8)));
+	}
+
+	@Test public void testIdsAreDenseWithSelfLoops() {
+		// The loop at 2 is one edge but one adjacency entry, so the table has fewer entries than 2 * edges
+		var graph = ValueGraphBuilder.undirected().allowsSelfLoops(true)
+				.<Integer, ImmutableSet<Transport>>immutable()
+				.putEdgeValue(1, 2, ImmutableSet.of(Transport.TAXI))
+				.putEdgeValue(2, 2, ImmutableSet.of(Transport.TAXI))
+				.putEdgeValue(2, 3, ImmutableSet.of(Transport.BUS))
+				.build();
+		var table = MoveTable.of(graph);
+		for (int id = 0; id < table.size(); id++) assertThat(table.id(table.move(id))).isEqualTo(id);
+		assertThat(table.id(table.single(BLUE, 2, BUS, 3))).isNotEqualTo(-1);
+	}
+
+	@Test public void testMovesNotOnGraphRejected() {
+		var table = MoveTable.of(standardGraph());
+		assertThat(table.id(taxi(MRX, 1, 2))).isEqualTo(-1);
+		assertThat(table.id(underground(MRX, 1, 8))).isEqualTo(-1);
+		assertThat(table.id(secret(BLUE, 1, 8))).isEqualTo(-1);
+		assertThatThrownBy(() -> table.single(MRX, 1, TAXI, 2)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test public void testSingleMoveHashIncludesSource() {
+		assertThat(taxi(MRX, 1, 8).hashCode()).isNotEqualTo(taxi(MRX, 9, 8).hashCode());
+		assertThat(taxi(MRX, 1, 8).hashCode()).isEqualTo(taxi(MRX, 1, 8).hashCode());
+	}
+
+	@Test public void testGeneratedMovesAreCanonical() {
+		var mrX = new Player(MRX, defaultMrXTickets(), 104);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 116);
+		GameState state = gameStateFactory.build(standard24MoveSetup(), mrX, blue);
+		var table = MoveTable.of(standard24MoveSetup().graph);
+		for (Move move : state.getAvailableMoves()) {
+			assertThat(table.move(table.id(move))).isEqualTo(move);
+		}
+		assertThat(table.single(MRX, 104, SECRET, 86)).isIn(state.getAvailableMoves());
+	}
+}